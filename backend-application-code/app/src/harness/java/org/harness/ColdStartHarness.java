@@ -0,0 +1,89 @@
+package org.harness;
+
+import org.startup.StartupPrimer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts {@link FirstResponseProbe} in fresh JVMs, alternating lazy and eager startup priming, and reports the
+ * median, min and max of each timing. Usage: {@code ColdStartHarness [runsPerMode]}.
+ * <p>
+ * The probe runs without credentials or network access, so priming steps that need them fail fast and are
+ * skipped; the numbers isolate JVM, Dagger and Jackson start-up cost.
+ */
+public class ColdStartHarness {
+
+    private static final String[] MODES = {"lazy", "eager"};
+    private static final String[] TIMINGS = {"jvm_to_main", "init", "first", "second", "total"};
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Map<String, Map<String, List<Double>>> results = new LinkedHashMap<>();
+        for (String mode : MODES) {
+            results.put(mode, new LinkedHashMap<>());
+        }
+        for (int run = 0; run < runs; run++) {
+            for (String mode : MODES) {
+                Map<String, Double> timings = probe(mode);
+                timings.forEach((name, value) -> results.get(mode).computeIfAbsent(name, k -> new ArrayList<>()).add(value));
+            }
+        }
+
+        System.out.printf("%-6s %-12s %10s %10s %10s%n", "mode", "timing (ms)", "median", "min", "max");
+        for (String mode : MODES) {
+            for (String timing : TIMINGS) {
+                List<Double> values = results.get(mode).getOrDefault(timing, List.of());
+                if (values.isEmpty()) {
+                    continue;
+                }
+                Collections.sort(values);
+                System.out.printf("%-6s %-12s %10.2f %10.2f %10.2f%n", mode, timing,
+                        values.get(values.size() / 2), values.get(0), values.get(values.size() - 1));
+            }
+        }
+    }
+
+    private static Map<String, Double> probe(String mode) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                FirstResponseProbe.class.getName());
+        builder.redirectErrorStream(true);
+        Map<String, String> env = builder.environment();
+        env.put(StartupPrimer.PRIMING_ENV, mode);
+        env.putIfAbsent("AWS_REGION", "us-east-1");
+        env.remove("COINBASE_API_SECRET_ARN");
+
+        Process process = builder.start();
+        Map<String, Double> timings = new LinkedHashMap<>();
+        StringBuilder log = new StringBuilder();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (!line.startsWith("RESULT ")) {
+                    log.append(line).append(System.lineSeparator());
+                    continue;
+                }
+                for (String field : line.substring("RESULT ".length()).split(" ")) {
+                    String[] pair = field.split("=", 2);
+                    if (!"status".equals(pair[0])) {
+                        timings.put(pair[0], Double.parseDouble(pair[1]));
+                    }
+                }
+            }
+        }
+        if (process.waitFor() != 0 || timings.isEmpty()) {
+            throw new IllegalStateException("Probe failed in " + mode + " mode (exit " + process.exitValue() + "):"
+                    + System.lineSeparator() + log);
+        }
+        return timings;
+    }
+}
@@ -0,0 +1,263 @@
+package org.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Coinbase APIs on a loopback port: Exchange {@code /products},
+ * {@code /products/{id}/candles}, {@code /orders} and {@code /time}, and Commerce {@code /charges}. Each request
+ * waits the configured latency plus up to the jitter (plus the slow delay for the slow fraction of requests), then
+ * fails with a 500 at the configured error rate; past the per-second limit it answers 429 as Coinbase does.
+ * Candles are deterministic, newest first and at most 300 per request.
+ */
+public class FakeCoinbaseServer implements AutoCloseable {
+
+    private static final int MAX_CANDLES = 300;
+    private static final String RATE_LIMITED = "{\"message\":\"Public rate limit exceeded\"}";
+    private static final String SERVER_ERROR = "{\"message\":\"Internal server error\"}";
+    private static final String NOT_FOUND = "{\"message\":\"NotFound\"}";
+    private static final String[] PRODUCTS = {"BTC-USD", "ETH-USD", "SOL-USD", "BTC-EUR", "ETH-BTC"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-coinbase");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicLong windowSecond = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double errorRate;
+    private volatile int rateLimitPerSecond;
+    private volatile double slowRate;
+    private volatile long slowMillis;
+
+    public FakeCoinbaseServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getExchangeUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String getChargesUrl() {
+        return getExchangeUrl() + "/charges";
+    }
+
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Delays {@code slowRate} of requests by a further {@code slowMillis}, for a long latency tail.
+     */
+    public void setSlowResponses(double slowRate, long slowMillis) {
+        this.slowRate = slowRate;
+        this.slowMillis = slowMillis;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Requests allowed per wall-clock second before answering 429; zero or less turns the limit off.
+     */
+    public void setRateLimitPerSecond(int rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+            requests.incrementAndGet();
+            if (overLimit()) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 429, RATE_LIMITED);
+                return;
+            }
+            delay();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 500, SERVER_ERROR);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if ("GET".equals(method) && path.startsWith("/products/") && path.endsWith("/candles")) {
+                respond(exchange, 200, candles(exchange.getRequestURI().getRawQuery()));
+            } else if ("GET".equals(method) && path.equals("/products")) {
+                respond(exchange, 200, products());
+            } else if ("POST".equals(method) && path.equals("/orders")) {
+                respond(exchange, 200, order());
+            } else if ("POST".equals(method) && path.equals("/charges")) {
+                respond(exchange, 201, charge());
+            } else if ("GET".equals(method) && path.equals("/time")) {
+                long now = System.currentTimeMillis();
+                respond(exchange, 200, String.format(Locale.ROOT, "{\"iso\":\"%s\",\"epoch\":%.3f}", Instant.ofEpochMilli(now), now / 1000.0));
+            } else {
+                respond(exchange, 404, NOT_FOUND);
+            }
+        }
+    }
+
+    private boolean overLimit() {
+        int limit = rateLimitPerSecond;
+        if (limit <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long current = windowSecond.get();
+        if (current != second && windowSecond.compareAndSet(current, second)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() > limit;
+    }
+
+    private void delay() {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (slowRate > 0 && ThreadLocalRandom.current().nextDouble() < slowRate) {
+            millis += slowMillis;
+        }
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // [[time, low, high, open, close, volume], ...] for the requested window, or the latest 300 without one
+    private static String candles(String query) {
+        Map<String, String> params = query(query);
+        int granularity = Integer.parseInt(params.getOrDefault("granularity", "60"));
+        long now = System.currentTimeMillis() / 1000;
+        long end = params.containsKey("end") ? Instant.parse(params.get("end")).getEpochSecond() : now;
+        long start = params.containsKey("start")
+                ? Instant.parse(params.get("start")).getEpochSecond()
+                : end - (long) (MAX_CANDLES - 1) * granularity;
+        long first = Math.floorDiv(start + granularity - 1, granularity) * granularity;
+        long last = Math.floorDiv(Math.min(end, now), granularity) * granularity;
+        if (last - first > (long) (MAX_CANDLES - 1) * granularity) {
+            first = last - (long) (MAX_CANDLES - 1) * granularity;
+        }
+
+        StringBuilder json = new StringBuilder(64 * MAX_CANDLES).append('[');
+        for (long time = last; time >= first; time -= granularity) {
+            double open = price(time);
+            double close = price(time + granularity);
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(time)
+                    .append(',').append(Math.min(open, close) - 5.25)
+                    .append(',').append(Math.max(open, close) + 7.5)
+                    .append(',').append(open)
+                    .append(',').append(close)
+                    .append(',').append(1 + time % 97 / 10.0)
+                    .append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    // Smooth and repeatable, so the same window always returns the same candles
+    private static double price(long time) {
+        return Math.round((30_000 + 10_000 * Math.sin(time / 2_592_000.0) + 500 * Math.sin(time / 86_400.0)) * 100) / 100.0;
+    }
+
+    private static String products() {
+        StringBuilder json = new StringBuilder("[");
+        for (String id : PRODUCTS) {
+            int dash = id.indexOf('-');
+            json.append(json.length() > 1 ? "," : "").append(String.format(
+                    "{\"id\":\"%s\",\"base_currency\":\"%s\",\"quote_currency\":\"%s\",\"status\":\"online\",\"trading_disabled\":false}",
+                    id, id.substring(0, dash), id.substring(dash + 1)));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String order() {
+        return "{\"id\":\"" + UUID.randomUUID() + "\",\"status\":\"pending\",\"settled\":false,\"created_at\":\""
+                + Instant.now() + "\"}";
+    }
+
+    private static String charge() {
+        String code = UUID.randomUUID().toString().substring(0, 8).toUpperCase(Locale.ROOT);
+        return "{\"data\":{\"id\":\"" + UUID.randomUUID() + "\",\"code\":\"" + code
+                + "\",\"hosted_url\":\"https://commerce.coinbase.com/pay/" + code
+                + "\",\"created_at\":\"" + Instant.now() + "\"}}";
+    }
+
+    private static Map<String, String> query(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
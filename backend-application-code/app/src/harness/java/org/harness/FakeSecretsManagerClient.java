@@ -0,0 +1,60 @@
+package org.harness;
+
+import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
+import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueRequest;
+import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueResponse;
+import software.amazon.awssdk.services.secretsmanager.model.SecretsManagerException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for Secrets Manager: returns whatever secret string is currently set, after a fixed
+ * delay, and fails every call while {@link #setFailing} is on.
+ */
+public class FakeSecretsManagerClient implements SecretsManagerClient {
+
+    private final long latencyMillis;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile String secretString;
+    private volatile boolean failing;
+
+    public FakeSecretsManagerClient(String secretString, long latencyMillis) {
+        this.secretString = secretString;
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setSecretString(String secretString) {
+        this.secretString = secretString;
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public GetSecretValueResponse getSecretValue(GetSecretValueRequest request) {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failing) {
+            throw SecretsManagerException.builder().message("Simulated outage").statusCode(503).build();
+        }
+        return GetSecretValueResponse.builder().arn(request.secretId()).secretString(secretString).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,48 @@
+package org.harness;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import org.handlers.Router;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs in a fresh JVM: builds the router the way the Lambda runtime does, sends it one request and
+ * prints a single {@code RESULT} line with the timings in milliseconds.
+ */
+public class FirstResponseProbe {
+
+    // Parsed, routed and answered without reaching the network: the start lies in the future
+    private static final String REQUEST_BODY =
+            "{\"action\":\"whatIf\",\"tradingPair\":\"BTC-USD\",\"amount\":100,\"start\":4102444800}";
+
+    public static void main(String[] args) {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long mainStart = System.currentTimeMillis();
+
+        long initStart = System.nanoTime();
+        Router handler = new Router();
+        long initNanos = System.nanoTime() - initStart;
+
+        long firstStart = System.nanoTime();
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request(), null);
+        long firstNanos = System.nanoTime() - firstStart;
+        long firstResponseAt = System.currentTimeMillis();
+
+        long secondStart = System.nanoTime();
+        handler.handleRequest(request(), null);
+        long secondNanos = System.nanoTime() - secondStart;
+
+        System.out.printf("RESULT status=%d jvm_to_main=%d init=%.2f first=%.2f second=%.2f total=%d%n",
+                response.getStatusCode(), mainStart - jvmStart, initNanos / 1e6, firstNanos / 1e6, secondNanos / 1e6,
+                firstResponseAt - jvmStart);
+    }
+
+    private static APIGatewayProxyRequestEvent request() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setResource("/coinbase-proxy");
+        request.setHttpMethod("POST");
+        request.setBody(REQUEST_BODY);
+        return request;
+    }
+}
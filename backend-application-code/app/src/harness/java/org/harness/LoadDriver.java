@@ -0,0 +1,225 @@
+package org.harness;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import org.dagger.CoinbaseExchangeModule;
+import org.dagger.DaggerServiceComponent;
+import org.dagger.ServiceComponent;
+import org.dagger.SysEnvModule;
+import org.handlers.Router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the router end to end against {@link FakeCoinbaseServer} at a fixed request rate and prints latency
+ * percentiles, throughput and status counts. Requests are scheduled open loop and each latency is measured from
+ * its scheduled start, so time spent queued behind slow requests is counted rather than hidden.
+ * Usage: {@code LoadDriver [rps=50] [seconds=10] [warmup=2] [concurrency=64] [latency=40] [jitter=20]
+ * [errors=0] [limit=0] [accept=]}, where latency and jitter are the fake's milliseconds per request, errors its
+ * 500 rate and limit its requests per second before 429s; accept sets the Accept header of every request. The run
+ * ends with the router's own per-stage histograms.
+ */
+public class LoadDriver {
+
+    private static final String SECRET = "{\"apiKey\":\"load-test\",\"apiPassphrase\":\"load-test\",\"apiSecret\":\""
+            + Base64.getEncoder().encodeToString("load-test-secret".getBytes(StandardCharsets.UTF_8)) + "\"}";
+    private static final long DAY = 86_400;
+
+    private enum Kind { RANGE, LATEST, WHAT_IF, ORDER, CHARGE }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int rps = Integer.parseInt(options.getOrDefault("rps", "50"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        Map<String, String> headers = new HashMap<>();
+        if (!options.getOrDefault("accept", "").isEmpty()) {
+            headers.put("Accept", options.get("accept"));
+        }
+
+        try (FakeCoinbaseServer coinbase = new FakeCoinbaseServer()) {
+            coinbase.setLatency(Long.parseLong(options.getOrDefault("latency", "40")), Long.parseLong(options.getOrDefault("jitter", "20")));
+            coinbase.setErrorRate(Double.parseDouble(options.getOrDefault("errors", "0")));
+            coinbase.setRateLimitPerSecond(Integer.parseInt(options.getOrDefault("limit", "0")));
+
+            Map<String, String> env = Map.of(
+                    "COINBASE_EXCHANGE_API_URL", coinbase.getExchangeUrl(),
+                    "COINBASE_COMMERCE_CHARGES_URL", coinbase.getChargesUrl(),
+                    "COINBASE_COMMERCE_API_KEY_ENV", "load-test",
+                    "COINBASE_API_SECRET_ARN", "load-test",
+                    "STAGE_METRICS", "histogram");
+            ServiceComponent component = DaggerServiceComponent.builder()
+                    .sysEnvModule(new SysEnvModule(env::get))
+                    .coinbaseExchangeModule(new CoinbaseExchangeModule(() -> new FakeSecretsManagerClient(SECRET, 0)))
+                    .build();
+            Router router = new Router(component);
+
+            ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+            try {
+                if (warmup > 0) {
+                    run(router, workers, rps, warmup, headers);
+                }
+                int requestsBefore = coinbase.getRequests();
+                int rateLimitedBefore = coinbase.getRateLimited();
+                int errorsBefore = coinbase.getErrors();
+                Result result = run(router, workers, rps, seconds, headers);
+                result.print(rps, seconds, concurrency);
+                System.out.printf("upstream  requests=%d 429=%d 500=%d%n", coinbase.getRequests() - requestsBefore,
+                        coinbase.getRateLimited() - rateLimitedBefore, coinbase.getErrors() - errorsBefore);
+                System.out.print("stages (warmup included)\n" + component.getStageMetrics().describe());
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    private static Result run(Router router, ExecutorService workers, int rps, int seconds, Map<String, String> headers)
+            throws InterruptedException {
+        int total = rps * seconds;
+        long period = TimeUnit.SECONDS.toNanos(1) / rps;
+        Result result = new Result(total);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * period;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Kind kind = Kind.values()[i % Kind.values().length];
+            int index = i;
+            workers.execute(() -> {
+                APIGatewayProxyResponseEvent response = router.handleRequest(request(kind, headers), null);
+                result.record(index, kind, response.getStatusCode(), bodyBytes(response), System.nanoTime() - scheduled);
+            });
+        }
+        result.await();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static int bodyBytes(APIGatewayProxyResponseEvent response) {
+        if (response.getBody() == null) {
+            return 0;
+        }
+        return Boolean.TRUE.equals(response.getIsBase64Encoded())
+                ? Base64.getDecoder().decode(response.getBody()).length
+                : response.getBody().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static APIGatewayProxyRequestEvent request(Kind kind, Map<String, String> headers) {
+        long now = System.currentTimeMillis() / 1000;
+        // Spread over 90 days so ranges miss the candle cache as well as hit it
+        long start = (now - 90 * DAY + ThreadLocalRandom.current().nextLong(80 * DAY)) / 3600 * 3600;
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setHttpMethod("POST");
+        request.setHeaders(headers);
+        request.setResource(kind == Kind.CHARGE ? "/charges" : "/coinbase-proxy");
+        switch (kind) {
+            case RANGE:
+                request.setBody(String.format("{\"action\":\"getCandles\",\"tradingPair\":\"BTC-USD\",\"granularity\":3600,\"start\":%d,\"end\":%d}", start, start + 5 * DAY));
+                break;
+            case LATEST:
+                request.setBody("{\"action\":\"getCandles\",\"tradingPair\":\"ETH-USD\",\"granularity\":300}");
+                break;
+            case WHAT_IF:
+                request.setBody(String.format("{\"action\":\"whatIf\",\"tradingPair\":\"BTC-USD\",\"amount\":100,\"granularity\":3600,\"start\":%d,\"end\":%d}", start, start + 10 * DAY));
+                break;
+            case ORDER:
+                request.setBody("{\"action\":\"placeOrder\",\"side\":\"buy\",\"productId\":\"BTC-USD\",\"type\":\"market\",\"funds\":\"10\"}");
+                break;
+            default:
+                request.setBody("{\"amount\":10,\"description\":\"Load test\",\"customerEmail\":\"load@example.com\"}");
+        }
+        return request;
+    }
+
+    private static class Result {
+        private final long[] latencies;
+        private final Kind[] kinds;
+        private final int[] statuses;
+        private final int[] bodyBytes;
+        private final AtomicInteger remaining;
+        private long elapsedNanos;
+
+        private Result(int total) {
+            latencies = new long[total];
+            kinds = new Kind[total];
+            statuses = new int[total];
+            bodyBytes = new int[total];
+            remaining = new AtomicInteger(total);
+        }
+
+        private void record(int index, Kind kind, int status, int bytes, long nanos) {
+            latencies[index] = nanos;
+            kinds[index] = kind;
+            statuses[index] = status;
+            bodyBytes[index] = bytes;
+            if (remaining.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        // The counter's decrement publishes the slots written before it
+        private synchronized void await() throws InterruptedException {
+            while (remaining.get() > 0) {
+                wait(1000);
+            }
+        }
+
+        private void print(int rps, int seconds, int concurrency) {
+            System.out.printf("target    rps=%d seconds=%d concurrency=%d%n", rps, seconds, concurrency);
+            System.out.printf("achieved  %.1f req/s over %.2f s%n", latencies.length / (elapsedNanos / 1e9), elapsedNanos / 1e9);
+            System.out.println("latency   " + percentiles(latencies));
+            for (Kind kind : Kind.values()) {
+                long[] ofKind = new long[latencies.length];
+                long bytes = 0;
+                int count = 0;
+                for (int i = 0; i < latencies.length; i++) {
+                    if (kinds[i] == kind) {
+                        ofKind[count++] = latencies[i];
+                        bytes += bodyBytes[i];
+                    }
+                }
+                System.out.printf("  %-8s n=%-6d %s body=%d B%n", kind.name().toLowerCase(), count,
+                        percentiles(Arrays.copyOf(ofKind, count)), count > 0 ? bytes / count : 0);
+            }
+            Map<Integer, Integer> byStatus = new TreeMap<>();
+            for (int status : statuses) {
+                byStatus.merge(status, 1, Integer::sum);
+            }
+            System.out.println("status    " + byStatus);
+        }
+
+        private static String percentiles(long[] nanos) {
+            if (nanos.length == 0) {
+                return "-";
+            }
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            return String.format("p50=%.2f p99=%.2f p999=%.2f max=%.2f ms",
+                    at(sorted, 0.50), at(sorted, 0.99), at(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double at(long[] sorted, double quantile) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.harness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cache.CandleCache;
+import org.candles.CandleSeries;
+import org.candles.RawCandles;
+import org.dagger.UtilityModule;
+import org.metrics.StageMetrics;
+import org.service.CandleBackfill;
+import org.service.CandleService;
+import org.service.CircuitBreaker;
+import org.service.CoinbaseExchangeService;
+import org.service.CoinbaseUpstreamException;
+import org.service.RequestHedger;
+import org.service.UpstreamRateLimiter;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link CoinbaseExchangeService} against {@link FakeCoinbaseServer} to show both halves of its resilience:
+ * latency percentiles for candle fetches with and without hedging while a fraction of responses are slow, then
+ * the circuit breaker opening on a failing upstream, refusing calls without sending them, the candle service
+ * answering latest candles from its stale copy, and the breaker closing again through a half-open trial.
+ * Usage: {@code ResilienceHarness [requests=200] [slowRate=0.05] [slowMillis=1000]}.
+ */
+public class ResilienceHarness {
+
+    private static final String SECRET = "{\"apiKey\":\"harness\",\"apiPassphrase\":\"harness\",\"apiSecret\":\""
+            + Base64.getEncoder().encodeToString("harness-secret".getBytes(StandardCharsets.UTF_8)) + "\"}";
+    private static final long OPEN_MILLIS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        double slowRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.05;
+        long slowMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        try (FakeCoinbaseServer coinbase = new FakeCoinbaseServer()) {
+            coinbase.setLatency(20, 10);
+            coinbase.setSlowResponses(slowRate, slowMillis);
+            hedging(coinbase, "unhedged", 0, requests);
+            hedging(coinbase, "hedged", 0.1, requests);
+
+            coinbase.setSlowResponses(0, 0);
+            breaker(coinbase);
+        }
+    }
+
+    private static void hedging(FakeCoinbaseServer coinbase, String name, double maxHedgeRatio, int requests) {
+        RequestHedger hedger = new RequestHedger(300, 50, 2_000, maxHedgeRatio);
+        CoinbaseExchangeService exchange = exchange(coinbase, new CircuitBreaker(name, 20, 0.5, OPEN_MILLIS), hedger);
+        int upstreamBefore = coinbase.getRequests();
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            exchange.fetchCandlesJson("BTC-USD", 60, null, null).join();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-9s p50=%7.1f p95=%7.1f p99=%7.1f max=%7.1f ms  upstream=%d hedges=%d won=%d delay=%.0f ms%n",
+                name, at(latencies, 0.50), at(latencies, 0.95), at(latencies, 0.99), latencies[requests - 1] / 1e6,
+                coinbase.getRequests() - upstreamBefore, hedger.getHedges(), hedger.getHedgeWins(), hedger.hedgeDelayNanos() / 1e6);
+    }
+
+    private static void breaker(FakeCoinbaseServer coinbase) throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("exchange", 20, 0.5, OPEN_MILLIS);
+        CoinbaseExchangeService exchange = exchange(coinbase, breaker, new RequestHedger(300, 50, 2_000, 0));
+        ObjectMapper objectMapper = new UtilityModule().providesObjectMapper();
+        // Moved a minute on per step so every latest-candles call misses the cache and goes upstream
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        CandleService candles = new CandleService(new CandleCache<>(10_000, CandleSeries::size),
+                new CandleCache<>(10_000, RawCandles::getSize), null, new CandleBackfill(1), exchange, objectMapper,
+                StageMetrics.disabled(), now::get);
+
+        step("healthy", breaker, coinbase, () -> describe(candles.getLatestCandlesJson("BTC-USD", 60).join()));
+
+        coinbase.setErrorRate(1);
+        int failed = 0;
+        while (breaker.isClosed()) {
+            try {
+                exchange.fetchCandlesJson("BTC-USD", 60, null, null).join();
+            } catch (CompletionException e) {
+                failed++;
+            }
+        }
+        System.out.printf("%-18s opened after %d failed calls%n", "upstream failing", failed);
+        step("breaker open", breaker, coinbase, () -> fetch(exchange));
+        now.addAndGet(60_000);
+        step("latest candles", breaker, coinbase, () -> describe(candles.getLatestCandlesJson("BTC-USD", 60).join()) + " (stale)");
+
+        coinbase.setErrorRate(0);
+        Thread.sleep(OPEN_MILLIS);
+        now.addAndGet(60_000);
+        step("half-open trial", breaker, coinbase, () -> describe(candles.getLatestCandlesJson("BTC-USD", 60).join()));
+        step("recovered", breaker, coinbase, () -> fetch(exchange));
+    }
+
+    private static CoinbaseExchangeService exchange(FakeCoinbaseServer coinbase, CircuitBreaker breaker, RequestHedger hedger) {
+        // Limits well above the harness's rate, so only the breaker and hedger shape the traffic
+        return new CoinbaseExchangeService(HttpClient.newHttpClient(), new UtilityModule().providesObjectMapper(),
+                new FakeSecretsManagerClient(SECRET, 0), coinbase.getExchangeUrl(), "harness", 900, StageMetrics.disabled(),
+                new UpstreamRateLimiter("public", 1_000, 1_000, 0), new UpstreamRateLimiter("private", 1_000, 1_000, 0),
+                breaker, hedger, 5_000);
+    }
+
+    private static void step(String name, CircuitBreaker breaker, FakeCoinbaseServer coinbase, Step step) {
+        int upstreamBefore = coinbase.getRequests();
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            outcome = step.run();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            outcome = cause instanceof CoinbaseUpstreamException
+                    ? String.format("failed %d retryAfter=%d s", ((CoinbaseUpstreamException) cause).getStatusCode(),
+                            ((CoinbaseUpstreamException) cause).getRetryAfterSeconds())
+                    : "failed " + cause;
+        }
+        System.out.printf("%-18s %-32s %7.1f ms upstream=%d breaker=%s opened=%d%n", name, outcome,
+                (System.nanoTime() - start) / 1e6, coinbase.getRequests() - upstreamBefore,
+                breaker.isClosed() ? "closed" : "not closed", breaker.getOpened());
+    }
+
+    private static String describe(RawCandles raw) {
+        return "ok " + raw.getSize() + " candles";
+    }
+
+    private static String fetch(CoinbaseExchangeService exchange) {
+        return "ok " + exchange.fetchCandlesJson("BTC-USD", 60, null, null).join().length() + " bytes";
+    }
+
+    private static double at(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private interface Step {
+        String run();
+    }
+}
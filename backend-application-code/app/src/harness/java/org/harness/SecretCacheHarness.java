@@ -0,0 +1,76 @@
+package org.harness;
+
+import org.cache.SecretCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks a {@link SecretCache} backed by {@link FakeSecretsManagerClient} through first load, refresh after the
+ * TTL, an outage and recovery, and then a burst of forced reloads for a rejected secret, printing what callers see
+ * and how long {@code get()} took at each step.
+ * Usage: {@code SecretCacheHarness [secretsManagerLatencyMillis]}.
+ */
+public class SecretCacheHarness {
+
+    private static final long REFRESH_AFTER_MILLIS = 300_000;
+    private static final long RETRY_AFTER_FAILURE_MILLIS = 30_000;
+    private static final long MIN_FORCED_REFRESH_INTERVAL_MILLIS = 60_000;
+
+    public static void main(String[] args) throws Exception {
+        long latency = args.length > 0 ? Long.parseLong(args[0]) : 150;
+        FakeSecretsManagerClient secrets = new FakeSecretsManagerClient("v1", latency);
+        AtomicLong now = new AtomicLong();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SecretCache<String> cache = new SecretCache<>(
+                () -> secrets.getSecretValue(b -> b.secretId("harness")).secretString(),
+                REFRESH_AFTER_MILLIS, executor, now::get);
+        try {
+            step("first load", cache, secrets);
+            step("cached", cache, secrets);
+
+            secrets.setSecretString("v2");
+            now.addAndGet(REFRESH_AFTER_MILLIS);
+            step("past ttl, refresh starts", cache, secrets);
+            settle(executor);
+            step("after refresh", cache, secrets);
+
+            secrets.setFailing(true);
+            now.addAndGet(REFRESH_AFTER_MILLIS);
+            step("past ttl, outage", cache, secrets);
+            settle(executor);
+            step("after failed refresh", cache, secrets);
+
+            secrets.setFailing(false);
+            secrets.setSecretString("v3");
+            now.addAndGet(RETRY_AFTER_FAILURE_MILLIS);
+            step("outage over, retry", cache, secrets);
+            settle(executor);
+            step("after recovery", cache, secrets);
+
+            // Every request with rejected keys asks for a reload; only one per interval reaches Secrets Manager
+            now.addAndGet(MIN_FORCED_REFRESH_INTERVAL_MILLIS);
+            for (int i = 0; i < 20; i++) {
+                cache.forceRefresh();
+                settle(executor);
+            }
+            step("20 forced reloads", cache, secrets);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void step(String name, SecretCache<String> cache, FakeSecretsManagerClient secrets) {
+        long start = System.nanoTime();
+        String value = cache.get();
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-26s value=%s get=%8.3f ms secretsManagerCalls=%d%n", name, value, millis, secrets.getCalls());
+    }
+
+    // Waits for the background refresh queued so far to finish
+    private static void settle(ExecutorService executor) throws Exception {
+        executor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,87 @@
+package org.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.candles.CandleSeries;
+import org.candles.CandleSeriesBinary;
+import org.dagger.UtilityModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode time of each negotiable candle response body: JSON and the binary encoding. The size of each is printed
+ * at setup, also gzip compressed as API Gateway sends it to clients that accept it, so time spent can be set
+ * against bytes saved. Sizes are one upstream page and a long range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandleEncodingBenchmark {
+
+    @Param({"300", "10000"})
+    public int candles;
+
+    private ObjectMapper objectMapper;
+    private CandleSeries series;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new UtilityModule().providesObjectMapper();
+        Random random = new Random(42);
+        CandleSeries.Builder builder = CandleSeries.builder(candles);
+        double price = 60_000;
+        for (int i = 0; i < candles; i++) {
+            double open = price;
+            price = Math.max(1, cents(price + random.nextGaussian() * 40));
+            double high = cents(Math.max(open, price) + random.nextDouble() * 25);
+            double low = cents(Math.min(open, price) - random.nextDouble() * 25);
+            double volume = Math.round(random.nextDouble() * 50 * 1e8) / 1e8;
+            builder.add(1_700_000_000L + i * 60L, low, high, open, price, volume);
+        }
+        series = builder.build();
+
+        byte[] json = objectMapper.writeValueAsBytes(series);
+        byte[] binary = CandleSeriesBinary.encode(series);
+        System.out.printf("%n%d candles: json=%d B, json+gzip=%d B, binary=%d B, binary+gzip=%d B%n", candles,
+                json.length, gzipLength(json), binary.length, gzipLength(binary));
+    }
+
+    @Benchmark
+    public byte[] json() throws Exception {
+        return objectMapper.writeValueAsBytes(series);
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return CandleSeriesBinary.encode(series);
+    }
+
+    private static int gzipLength(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.size();
+    }
+
+    private static double cents(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
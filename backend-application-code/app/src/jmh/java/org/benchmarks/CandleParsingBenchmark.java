@@ -0,0 +1,72 @@
+package org.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.candles.CandleSeries;
+import org.candles.RawCandles;
+import org.dagger.UtilityModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling an upstream candles body: the full parse into a {@link CandleSeries} and the
+ * {@link RawCandles#check} shape scan used on the pass-through path. Sizes are one upstream page, a backfilled
+ * year of hourly candles and a long minute-level range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandleParsingBenchmark {
+
+    @Param({"300", "10000", "100000"})
+    public int candles;
+
+    private ObjectMapper objectMapper;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new UtilityModule().providesObjectMapper();
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(candles * 80).append('[');
+        double price = 60_000;
+        // Newest first, as Coinbase returns them
+        for (int i = candles - 1; i >= 0; i--) {
+            double open = price;
+            price = Math.max(1, price + random.nextGaussian() * 40);
+            double high = Math.max(open, price) + random.nextDouble() * 25;
+            double low = Math.min(open, price) - random.nextDouble() * 25;
+            json.append(String.format(Locale.US, "[%d,%.2f,%.2f,%.2f,%.2f,%.8f]",
+                    1_700_000_000L + i * 60L, low, high, open, price, random.nextDouble() * 50));
+            if (i > 0) {
+                json.append(',');
+            }
+        }
+        body = json.append(']').toString();
+    }
+
+    @Benchmark
+    public CandleSeries parse() throws Exception {
+        return objectMapper.readValue(body, CandleSeries.class);
+    }
+
+    @Benchmark
+    public RawCandles check() {
+        return RawCandles.check(body);
+    }
+}
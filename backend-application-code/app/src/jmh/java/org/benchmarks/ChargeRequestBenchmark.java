@@ -0,0 +1,56 @@
+package org.benchmarks;
+
+import org.config.CoinbaseConfig;
+import org.dagger.UtilityModule;
+import org.dto.CreatePaymentInput;
+import org.metrics.StageMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.service.CircuitBreaker;
+import org.service.CoinbaseService;
+import org.service.UpstreamRateLimiter;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything {@link CoinbaseService#createCharge} does before the network call: the charge body, its JSON and
+ * the {@link HttpRequest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChargeRequestBenchmark {
+
+    private CoinbaseService coinbaseService;
+    private CreatePaymentInput input;
+
+    @Setup
+    public void setUp() {
+        coinbaseService = new CoinbaseService(HttpClient.newHttpClient(), new UtilityModule().providesObjectMapper(),
+                new CoinbaseConfig("benchmark-api-key", "https://example.com", "https://api.commerce.coinbase.com/charges"),
+                StageMetrics.disabled(), new UpstreamRateLimiter("benchmark", 10, 10, 0),
+                new CircuitBreaker("benchmark", 20, 0.5, 30_000));
+        input = new CreatePaymentInput();
+        input.setAmount(100.0);
+        input.setDescription("What if I invested");
+        input.setCustomerEmail("someone@example.com");
+    }
+
+    @Benchmark
+    public HttpRequest buildChargeRequest() throws Exception {
+        return coinbaseService.buildChargeRequest(input);
+    }
+}
@@ -0,0 +1,92 @@
+package org.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files (as written by the {@code jmh} task) benchmark by benchmark: score and
+ * allocation per operation in each, and the score change. A change whose error intervals overlap is marked
+ * {@code ~} as noise. Usage: {@code JmhResultDiff baseline.json current.json}.
+ */
+public class JmhResultDiff {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: JmhResultDiff <baseline.json> <current.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        int width = 40;
+        for (String name : current.keySet()) {
+            width = Math.max(width, name.length());
+        }
+        String row = "%-" + width + "s %18s %18s %9s %12s %12s%n";
+        System.out.printf(row, "benchmark", "baseline", "current", "change", "B/op before", "B/op after");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            String unit = now.path("primaryMetric").path("scoreUnit").asText();
+            System.out.printf(row, entry.getKey(),
+                    before == null ? "-" : score(before) + " " + unit,
+                    score(now) + " " + unit,
+                    before == null ? "new" : change(before.path("primaryMetric"), now.path("primaryMetric")),
+                    before == null ? "-" : allocation(before),
+                    allocation(now));
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf(row, name, score(baseline.get(name)), "-", "removed", allocation(baseline.get(name)), "-");
+            }
+        }
+    }
+
+    // Keyed by benchmark method and parameters, e.g. "CandleParsingBenchmark.parse candles=300"
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String benchmark = result.path("benchmark").asText();
+            StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(name.toString(), result);
+        }
+        return results;
+    }
+
+    private static String score(JsonNode result) {
+        return String.format("%.3f", result.path("primaryMetric").path("score").asDouble());
+    }
+
+    private static String allocation(JsonNode result) {
+        JsonNode metric = result.path("secondaryMetrics").path(ALLOCATION);
+        return metric.isMissingNode() ? "-" : String.format("%.0f", metric.path("score").asDouble());
+    }
+
+    private static String change(JsonNode before, JsonNode now) {
+        double a = before.path("score").asDouble();
+        double b = now.path("score").asDouble();
+        double errorA = error(before);
+        double errorB = error(now);
+        boolean overlap = a + errorA >= b - errorB && b + errorB >= a - errorA;
+        return String.format("%s%+.1f%%", overlap ? "~" : "", a == 0 ? 0 : (b - a) / a * 100);
+    }
+
+    // JMH reports NaN when there were too few iterations for an interval
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
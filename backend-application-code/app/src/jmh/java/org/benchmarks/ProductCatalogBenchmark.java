@@ -0,0 +1,55 @@
+package org.benchmarks;
+
+import org.dagger.UtilityModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.service.ProductCatalog;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a request's trading pair against a catalog the size of the exchange's (about 800 products): a pair in
+ * the exchange's casing, one that needs normalizing, and one that is rejected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductCatalogBenchmark {
+
+    private static final int PRODUCTS = 800;
+
+    @Param({"BTC-USD", "btc-usd", "NOPE-USD"})
+    public String tradingPair;
+
+    private ProductCatalog catalog;
+
+    @Setup
+    public void setUp() {
+        StringBuilder products = new StringBuilder("[{\"id\":\"BTC-USD\"}");
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.append(",{\"id\":\"C").append(i).append(i % 2 == 0 ? "-USD" : "-USDC").append("\"}");
+        }
+        String body = products.append(']').toString();
+        catalog = new ProductCatalog(() -> CompletableFuture.completedFuture(body), new UtilityModule().providesObjectMapper(),
+                TimeUnit.HOURS.toMillis(1));
+        catalog.refresh().join();
+    }
+
+    @Benchmark
+    public String normalize() {
+        return catalog.normalize(tradingPair);
+    }
+}
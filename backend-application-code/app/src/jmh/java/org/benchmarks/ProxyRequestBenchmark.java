@@ -0,0 +1,64 @@
+package org.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.dagger.UtilityModule;
+import org.dto.coinbaseexchange.ProxyRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a proxy request body into its {@link ProxyRequest} subtype, with the {@code action} type id first
+ * (as the frontend sends it) or last, which makes Jackson buffer the other fields until it knows the type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyRequestBenchmark {
+
+    private static final Map<String, String> FIELDS = Map.of(
+            "getCandles", "\"tradingPair\":\"BTC-USD\",\"granularity\":3600,\"start\":1759276800,\"end\":1760313600",
+            "whatIf", "\"tradingPair\":\"ETH-USD\",\"amount\":250.0,\"start\":1609459200,\"granularity\":86400,\"points\":365",
+            "placeOrder", "\"side\":\"buy\",\"productId\":\"BTC-USD\",\"type\":\"market\",\"funds\":\"100.00\"",
+            "getCandlesBatch", "\"requests\":["
+                    + "{\"tradingPair\":\"BTC-USD\",\"granularity\":3600,\"start\":1759276800,\"end\":1760313600},"
+                    + "{\"tradingPair\":\"ETH-USD\",\"granularity\":3600,\"start\":1759276800,\"end\":1760313600},"
+                    + "{\"tradingPair\":\"SOL-USD\",\"granularity\":86400}]");
+
+    @Param({"getCandles", "whatIf", "placeOrder", "getCandlesBatch"})
+    public String action;
+
+    @Param({"first", "last"})
+    public String actionPosition;
+
+    private ObjectMapper objectMapper;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new UtilityModule().providesObjectMapper();
+        String type = "\"action\":\"" + action + "\"";
+        body = "first".equals(actionPosition)
+                ? "{" + type + "," + FIELDS.get(action) + "}"
+                : "{" + FIELDS.get(action) + "," + type + "}";
+    }
+
+    @Benchmark
+    public ProxyRequest deserialize() throws Exception {
+        return objectMapper.readValue(body, ProxyRequest.class);
+    }
+}
@@ -0,0 +1,150 @@
+package org.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.candles.CandleSeries;
+import org.dagger.UtilityModule;
+import org.dto.PaymentLink;
+import org.handlers.ResponseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a handler response: the original per-call header map, {@code System.getenv} lookups and
+ * {@code writeValueAsString} against {@link ResponseWriter}, for a 300 candle series, a payment link and a
+ * validation error. The {@code stream*} variants write the response envelope as the streaming handlers do.
+ * Run with {@code -prof gc} to compare allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+
+    private static final String INVALID_CURSOR = ResponseWriter.errorBody("Invalid cursor.");
+
+    private ObjectMapper objectMapper;
+    private ResponseWriter writer;
+    private CandleSeries candles;
+    private PaymentLink paymentLink;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new UtilityModule().providesObjectMapper();
+        writer = new ResponseWriter(objectMapper, ResponseWriter.corsHeaders("*", null));
+
+        CandleSeries.Builder builder = CandleSeries.builder(300);
+        for (int i = 300; i > 0; i--) {
+            double open = 60_000 + i;
+            builder.add(1_760_000_000L + i * 300L, open - 12.5, open + 20.25, open, open + 3.75, 1.2345 * i);
+        }
+        candles = builder.build();
+
+        paymentLink = new PaymentLink();
+        paymentLink.setId("5d7c3b9e-8a1f-4c2b-9e6d-1f2a3b4c5d6e");
+        paymentLink.setChargeId("ABCD1234");
+        paymentLink.setHostedUrl("https://commerce.coinbase.com/pay/5d7c3b9e-8a1f-4c2b-9e6d-1f2a3b4c5d6e");
+        paymentLink.setCreatedAt("2025-10-16T12:00:00Z");
+        paymentLink.setAmount(100.0);
+        paymentLink.setCurrency("USD");
+        paymentLink.setDescription("What if I invested");
+        paymentLink.setCustomerEmail("someone@example.com");
+        paymentLink.setStatus("pending");
+
+        output = new ByteArrayOutputStream(16 * 1024);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent legacyCandles() {
+        return legacyJson(200, candles);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent writerCandles() {
+        return writer.json(200, candles).toEvent();
+    }
+
+    @Benchmark
+    public int streamCandles() throws IOException {
+        output.reset();
+        writer.json(200, candles).writeTo(output);
+        return output.size();
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent legacyPaymentLink() {
+        return legacyJson(200, paymentLink);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent writerPaymentLink() {
+        return writer.json(200, paymentLink).toEvent();
+    }
+
+    @Benchmark
+    public int streamPaymentLink() throws IOException {
+        output.reset();
+        writer.json(200, paymentLink).writeTo(output);
+        return output.size();
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent legacyError() {
+        return legacyJson(400, legacyError("Invalid cursor."));
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent writerError() {
+        return writer.rawJson(400, INVALID_CURSOR).toEvent();
+    }
+
+    @Benchmark
+    public int streamError() throws IOException {
+        output.reset();
+        writer.rawJson(400, INVALID_CURSOR).writeTo(output);
+        return output.size();
+    }
+
+    // The response helpers the writer replaced
+    private APIGatewayProxyResponseEvent legacyJson(int status, Object payload) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            body = "{\"error\":\"Serialization error\"}";
+        }
+        APIGatewayProxyResponseEvent res = new APIGatewayProxyResponseEvent();
+        res.setStatusCode(status);
+        res.setBody(body);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Access-Control-Allow-Origin", System.getenv("FRONTEND_BASE_URL") != null ? System.getenv("FRONTEND_BASE_URL") : "*");
+        headers.put("Access-Control-Allow-Methods", "OPTIONS,GET,POST");
+        res.setHeaders(headers);
+        return res;
+    }
+
+    private static Map<String, String> legacyError(String message) {
+        Map<String, String> err = new HashMap<>();
+        err.put("error", message);
+        return err;
+    }
+}
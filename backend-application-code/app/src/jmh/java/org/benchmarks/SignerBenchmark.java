@@ -0,0 +1,72 @@
+package org.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.service.CoinbaseRequestSigner;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request signing cost: the original build-everything-per-call signature against
+ * {@link CoinbaseRequestSigner}. Run with {@code -prof gc} to compare allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignerBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[64]);
+    private static final String TIMESTAMP = "1760600000";
+    private static final String CANDLES_PATH = "/products/BTC-USD/candles?granularity=3600&start=2025-10-01T00:00:00Z&end=2025-10-13T11:00:00Z";
+    private static final String ORDER_BODY = "{\"side\":\"buy\",\"product_id\":\"BTC-USD\",\"type\":\"market\",\"funds\":\"100.00\"}";
+
+    private CoinbaseRequestSigner signer;
+
+    @Setup
+    public void setUp() {
+        signer = new CoinbaseRequestSigner(SECRET);
+    }
+
+    @Benchmark
+    public String legacyGet() throws Exception {
+        return legacySign(TIMESTAMP, "GET", CANDLES_PATH, "");
+    }
+
+    @Benchmark
+    public String signerGet() {
+        return signer.sign(TIMESTAMP, "GET", CANDLES_PATH, "");
+    }
+
+    @Benchmark
+    public String legacyPost() throws Exception {
+        return legacySign(TIMESTAMP, "POST", "/orders", ORDER_BODY);
+    }
+
+    @Benchmark
+    public String signerPost() {
+        return signer.sign(TIMESTAMP, "POST", "/orders", ORDER_BODY);
+    }
+
+    // The signature code the signer replaced
+    private static String legacySign(String timestamp, String method, String requestPath, String body) throws Exception {
+        String message = timestamp + method + requestPath + body;
+        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
+        SecretKeySpec secret_key = new SecretKeySpec(Base64.getDecoder().decode(SECRET), "HmacSHA256");
+        sha256_HMAC.init(secret_key);
+        return Base64.getEncoder().encodeToString(sha256_HMAC.doFinal(message.getBytes()));
+    }
+}
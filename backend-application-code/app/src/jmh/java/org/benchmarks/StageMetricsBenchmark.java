@@ -0,0 +1,62 @@
+package org.benchmarks;
+
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the stage instrumentation adds to a request: timing one stage, and an invocation's begin/finish with the
+ * stages a warm candle request records. {@code mode=OFF} is the cost left on the hot path when metrics are
+ * disabled. EMF is left out, since it measures the logging backend rather than the instrumentation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageMetricsBenchmark {
+
+    @Param({"OFF", "HISTOGRAM"})
+    public StageMetrics.Mode mode;
+
+    private StageMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new StageMetrics(mode, "benchmark");
+        // Past the cold invocation, as on a warm container
+        metrics.finish(metrics.begin(), "/coinbase-proxy", 200);
+    }
+
+    @Benchmark
+    public long stage() {
+        long start = metrics.start();
+        metrics.record(Stage.UPSTREAM_PARSE, start);
+        return start;
+    }
+
+    @Benchmark
+    public void invocation() {
+        StageMetrics.Invocation invocation = metrics.begin();
+        metrics.record(Stage.REQUEST_PARSE, metrics.start());
+        metrics.record(Stage.SECRET, metrics.start());
+        metrics.record(Stage.SIGN, metrics.start());
+        metrics.record(Stage.UPSTREAM, metrics.start());
+        metrics.record(Stage.UPSTREAM_PARSE, metrics.start());
+        metrics.record(Stage.RESPONSE_SERIALIZE, metrics.start());
+        metrics.finish(invocation, "/coinbase-proxy", 200);
+    }
+}
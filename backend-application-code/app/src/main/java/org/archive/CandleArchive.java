@@ -0,0 +1,80 @@
+package org.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleSeries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Local on-disk archive of closed candles, one {@link CandleSegment} per (pair, granularity) under a single
+ * directory. The archive is a best-effort cache: I/O failures are logged and reported as a miss.
+ */
+@Slf4j
+public class CandleArchive implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final Pattern SAFE_PAIR = Pattern.compile("[A-Za-z0-9]+(-[A-Za-z0-9]+)*");
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, CandleSegment> segments = new ConcurrentHashMap<>();
+
+    public CandleArchive(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public CandleRecords read(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        if (!isArchivable(tradingPair)) {
+            return null;
+        }
+        try {
+            return segment(tradingPair, granularity).read(windowStart, windowEnd);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to read candle archive for {} {}", tradingPair, granularity, e);
+            return null;
+        }
+    }
+
+    public void append(String tradingPair, int granularity, long windowStart, long windowEnd, CandleSeries series) {
+        if (!isArchivable(tradingPair)) {
+            return;
+        }
+        try {
+            segment(tradingPair, granularity).append(windowStart, windowEnd, series);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to append to candle archive for {} {}", tradingPair, granularity, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (CandleSegment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    static boolean isArchivable(String tradingPair) {
+        return tradingPair != null && SAFE_PAIR.matcher(tradingPair).matches();
+    }
+
+    private CandleSegment segment(String tradingPair, int granularity) {
+        return segments.computeIfAbsent(tradingPair + "-" + granularity, name -> {
+            try {
+                return CandleSegment.open(directory.resolve(name + SEGMENT_SUFFIX), directory.resolve(name + INDEX_SUFFIX), granularity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
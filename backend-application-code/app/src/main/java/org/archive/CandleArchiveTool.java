@@ -0,0 +1,114 @@
+package org.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleSeries;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Offline maintenance for a candle archive directory. Must not run while a handler is writing to the same
+ * directory.
+ * <pre>
+ *   CandleArchiveTool compact &lt;dir&gt;        merge blocks, drop duplicates, coalesce adjacent windows
+ *   CandleArchiveTool rebuild-index &lt;dir&gt;  regenerate every index file from its segment
+ * </pre>
+ */
+@Slf4j
+public class CandleArchiveTool {
+
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !("compact".equals(args[0]) || "rebuild-index".equals(args[0]))) {
+            System.err.println("Usage: CandleArchiveTool (compact|rebuild-index) <archive-dir>");
+            System.exit(2);
+        }
+        Path directory = Paths.get(args[1]);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + CandleArchive.SEGMENT_SUFFIX)) {
+            for (Path segmentPath : stream) {
+                if ("compact".equals(args[0])) {
+                    compact(segmentPath);
+                } else {
+                    rebuildIndex(segmentPath);
+                }
+            }
+        }
+    }
+
+    public static void rebuildIndex(Path segmentPath) throws IOException {
+        try (CandleSegment segment = CandleSegment.open(segmentPath, indexPathFor(segmentPath), granularityOf(segmentPath))) {
+            segment.rebuildIndex();
+            log.info("Rebuilt index for {} ({} blocks)", segmentPath, segment.blocks().size());
+        }
+    }
+
+    /**
+     * Rewrites a segment with one block per run of contiguous windows. Where windows were appended more than
+     * once, the most recently appended candle wins.
+     */
+    public static void compact(Path segmentPath) throws IOException {
+        int granularity = granularityOf(segmentPath);
+        Path indexPath = indexPathFor(segmentPath);
+        Path compactSegmentPath = Paths.get(segmentPath + COMPACT_SUFFIX);
+        Path compactIndexPath = Paths.get(indexPath + COMPACT_SUFFIX);
+        Files.deleteIfExists(compactSegmentPath);
+        Files.deleteIfExists(compactIndexPath);
+
+        int blocksBefore;
+        List<long[]> runs = new ArrayList<>();
+        CandleSeries candles;
+        try (CandleSegment segment = CandleSegment.open(segmentPath, indexPath, granularity)) {
+            List<CandleSegment.Block> blocks = segment.blocks();
+            blocksBefore = blocks.size();
+
+            for (CandleSegment.Block block : blocks) {
+                long[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+                if (last != null && block.getWindowStart() <= last[1] + granularity) {
+                    last[1] = Math.max(last[1], block.getWindowEnd());
+                } else {
+                    runs.add(new long[]{block.getWindowStart(), block.getWindowEnd()});
+                }
+            }
+
+            // Adding in file order lets the builder keep the most recently appended duplicate.
+            List<CandleSegment.Block> appendOrder = new ArrayList<>(blocks);
+            appendOrder.sort(Comparator.comparingLong(CandleSegment.Block::getRecordsOffset));
+            CandleSeries.Builder builder = CandleSeries.builder(0);
+            for (CandleSegment.Block block : appendOrder) {
+                CandleRecords records = segment.records(block);
+                for (int i = 0; i < records.size(); i++) {
+                    builder.add(records.time(i), records.low(i), records.high(i), records.open(i), records.close(i), records.volume(i));
+                }
+            }
+            candles = builder.build();
+        }
+
+        try (CandleSegment compacted = CandleSegment.open(compactSegmentPath, compactIndexPath, granularity)) {
+            for (long[] run : runs) {
+                compacted.append(run[0], run[1], candles);
+            }
+        }
+        Files.move(compactSegmentPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Compacted {}: {} blocks -> {} blocks, {} candles", segmentPath, blocksBefore, runs.size(), candles.size());
+    }
+
+    private static Path indexPathFor(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - CandleArchive.SEGMENT_SUFFIX.length()) + CandleArchive.INDEX_SUFFIX);
+    }
+
+    private static int granularityOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        String baseName = name.substring(0, name.length() - CandleArchive.SEGMENT_SUFFIX.length());
+        return Integer.parseInt(baseName.substring(baseName.lastIndexOf('-') + 1));
+    }
+}
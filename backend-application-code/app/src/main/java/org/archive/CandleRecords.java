@@ -0,0 +1,76 @@
+package org.archive;
+
+import org.candles.CandleSeries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view over consecutive fixed-width candle records, ordered oldest first. The view reads straight
+ * from the mapped segment; nothing is copied until {@link #toSeries()} is called.
+ */
+public class CandleRecords {
+
+    static final int RECORD_BYTES = Long.BYTES + 5 * Double.BYTES;
+
+    private static final int LOW_OFFSET = Long.BYTES;
+    private static final int HIGH_OFFSET = LOW_OFFSET + Double.BYTES;
+    private static final int OPEN_OFFSET = HIGH_OFFSET + Double.BYTES;
+    private static final int CLOSE_OFFSET = OPEN_OFFSET + Double.BYTES;
+    private static final int VOLUME_OFFSET = CLOSE_OFFSET + Double.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    CandleRecords(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.remaining() / RECORD_BYTES;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long time(int index) {
+        return buffer.getLong(index * RECORD_BYTES);
+    }
+
+    public double low(int index) {
+        return buffer.getDouble(index * RECORD_BYTES + LOW_OFFSET);
+    }
+
+    public double high(int index) {
+        return buffer.getDouble(index * RECORD_BYTES + HIGH_OFFSET);
+    }
+
+    public double open(int index) {
+        return buffer.getDouble(index * RECORD_BYTES + OPEN_OFFSET);
+    }
+
+    public double close(int index) {
+        return buffer.getDouble(index * RECORD_BYTES + CLOSE_OFFSET);
+    }
+
+    public double volume(int index) {
+        return buffer.getDouble(index * RECORD_BYTES + VOLUME_OFFSET);
+    }
+
+    /**
+     * Copies the records into a {@link CandleSeries}.
+     */
+    public CandleSeries toSeries() {
+        CandleSeries.Builder builder = CandleSeries.builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(time(i), low(i), high(i), open(i), close(i), volume(i));
+        }
+        return builder.build();
+    }
+
+    static void write(ByteBuffer target, long time, double low, double high, double open, double close, double volume) {
+        target.putLong(time)
+                .putDouble(low)
+                .putDouble(high)
+                .putDouble(open)
+                .putDouble(close)
+                .putDouble(volume);
+    }
+}
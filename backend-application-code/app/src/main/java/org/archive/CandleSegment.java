@@ -0,0 +1,296 @@
+package org.archive;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleSeries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only candle segment for one (pair, granularity).
+ * <p>
+ * The segment file is a 16 byte header followed by blocks. Each block covers one closed time window and is a
+ * 24 byte header ({@code windowStart, windowEnd, count}) followed by {@code count} fixed-width records sorted
+ * oldest first. An empty block still records that the window was fetched and had no trades. The companion
+ * index file holds one entry per block and is rebuilt from the segment whenever it is missing or stale.
+ * Reads go through a read-only {@link MappedByteBuffer}.
+ */
+@Slf4j
+public class CandleSegment implements Closeable {
+
+    static final int SEGMENT_MAGIC = 0x434E444C; // "CNDL"
+    static final int INDEX_MAGIC = 0x43494458;   // "CIDX"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 16;
+    static final int BLOCK_HEADER_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES;
+    static final int INDEX_HEADER_BYTES = 8;
+    static final int INDEX_ENTRY_BYTES = 3 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final Path segmentPath;
+    private final Path indexPath;
+    private final int granularity;
+    private final FileChannel segment;
+    private final FileChannel index;
+    private final TreeMap<Long, Block> blocks = new TreeMap<>();
+    private MappedByteBuffer mapped;
+
+    private CandleSegment(Path segmentPath, Path indexPath, int granularity, FileChannel segment, FileChannel index) {
+        this.segmentPath = segmentPath;
+        this.indexPath = indexPath;
+        this.granularity = granularity;
+        this.segment = segment;
+        this.index = index;
+    }
+
+    public static CandleSegment open(Path segmentPath, Path indexPath, int granularity) throws IOException {
+        FileChannel segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CandleSegment candleSegment = new CandleSegment(segmentPath, indexPath, granularity, segment, index);
+        try {
+            candleSegment.load();
+        } catch (IOException | RuntimeException e) {
+            candleSegment.close();
+            throw e;
+        }
+        return candleSegment;
+    }
+
+    public int getGranularity() {
+        return granularity;
+    }
+
+    public Path getSegmentPath() {
+        return segmentPath;
+    }
+
+    public Path getIndexPath() {
+        return indexPath;
+    }
+
+    /**
+     * Records within [windowStart, windowEnd], or null when no single block covers that window.
+     */
+    public synchronized CandleRecords read(long windowStart, long windowEnd) throws IOException {
+        Block block = covering(windowStart, windowEnd);
+        if (block == null) {
+            return null;
+        }
+        CandleRecords records = records(block);
+        int from = lowerBound(records, windowStart);
+        int to = lowerBound(records, windowEnd + 1);
+        return slice(block, from, to);
+    }
+
+    /**
+     * Appends a closed window unless it is already covered. Candles outside the window are dropped.
+     */
+    public synchronized void append(long windowStart, long windowEnd, CandleSeries series) throws IOException {
+        if (covering(windowStart, windowEnd) != null) {
+            return;
+        }
+        CandleSeries inWindow = series.between(windowStart, windowEnd);
+        int count = inWindow.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_HEADER_BYTES + count * CandleRecords.RECORD_BYTES);
+        buffer.putLong(windowStart).putLong(windowEnd).putInt(count).putInt(0);
+        for (int i = 0; i < count; i++) {
+            CandleRecords.write(buffer, inWindow.time(i), inWindow.low(i), inWindow.high(i), inWindow.open(i),
+                    inWindow.close(i), inWindow.volume(i));
+        }
+        buffer.flip();
+
+        long blockOffset = segment.size();
+        writeFully(segment, buffer, blockOffset);
+        Block block = new Block(windowStart, windowEnd, blockOffset + BLOCK_HEADER_BYTES, count);
+        appendIndexEntry(block);
+        blocks.put(windowStart, block);
+    }
+
+    /**
+     * Every block in window order.
+     */
+    public synchronized List<Block> blocks() {
+        return new ArrayList<>(blocks.values());
+    }
+
+    public synchronized CandleRecords records(Block block) throws IOException {
+        long end = block.getRecordsOffset() + (long) block.getCount() * CandleRecords.RECORD_BYTES;
+        if (mapped == null || end > mapped.capacity()) {
+            mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.limit((int) end).position((int) block.getRecordsOffset());
+        return new CandleRecords(view.slice());
+    }
+
+    /**
+     * Discards the index and rebuilds it by scanning block headers, truncating a torn trailing block.
+     */
+    public synchronized void rebuildIndex() throws IOException {
+        blocks.clear();
+        long size = segment.size();
+        long offset = SEGMENT_HEADER_BYTES;
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        while (offset + BLOCK_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment, header, offset);
+            header.flip();
+            long windowStart = header.getLong();
+            long windowEnd = header.getLong();
+            int count = header.getInt();
+            long recordsOffset = offset + BLOCK_HEADER_BYTES;
+            long blockEnd = recordsOffset + (long) count * CandleRecords.RECORD_BYTES;
+            if (count < 0 || blockEnd > size) {
+                break;
+            }
+            blocks.put(windowStart, new Block(windowStart, windowEnd, recordsOffset, count));
+            offset = blockEnd;
+        }
+        if (offset != size) {
+            log.warn("Truncating torn block in {} at offset {} (size {})", segmentPath, offset, size);
+            segment.truncate(offset);
+            mapped = null;
+        }
+
+        index.truncate(0);
+        ByteBuffer indexHeader = ByteBuffer.allocate(INDEX_HEADER_BYTES).putInt(INDEX_MAGIC).putInt(VERSION);
+        indexHeader.flip();
+        writeFully(index, indexHeader, 0);
+        for (Block block : blocks.values()) {
+            appendIndexEntry(block);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        try {
+            segment.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private void load() throws IOException {
+        if (segment.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES)
+                    .putInt(SEGMENT_MAGIC).putInt(VERSION).putInt(granularity).putInt(0);
+            header.flip();
+            writeFully(segment, header, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            readFully(segment, header, 0);
+            header.flip();
+            if (header.getInt() != SEGMENT_MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a candle segment: " + segmentPath);
+            }
+            int storedGranularity = header.getInt();
+            if (storedGranularity != granularity) {
+                throw new IOException(String.format("Segment %s has granularity %d, expected %d", segmentPath, storedGranularity, granularity));
+            }
+        }
+        if (!loadIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    private boolean loadIndex() throws IOException {
+        long indexSize = index.size();
+        if (indexSize < INDEX_HEADER_BYTES || (indexSize - INDEX_HEADER_BYTES) % INDEX_ENTRY_BYTES != 0) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) indexSize);
+        readFully(index, buffer, 0);
+        buffer.flip();
+        if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION) {
+            return false;
+        }
+        long expectedSegmentSize = SEGMENT_HEADER_BYTES;
+        while (buffer.hasRemaining()) {
+            Block block = new Block(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+            buffer.getInt();
+            blocks.put(block.getWindowStart(), block);
+            expectedSegmentSize = Math.max(expectedSegmentSize, block.getRecordsOffset() + (long) block.getCount() * CandleRecords.RECORD_BYTES);
+        }
+        if (expectedSegmentSize != segment.size()) {
+            blocks.clear();
+            return false;
+        }
+        return true;
+    }
+
+    private void appendIndexEntry(Block block) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES)
+                .putLong(block.getWindowStart())
+                .putLong(block.getWindowEnd())
+                .putLong(block.getRecordsOffset())
+                .putInt(block.getCount())
+                .putInt(0);
+        entry.flip();
+        writeFully(index, entry, Math.max(INDEX_HEADER_BYTES, index.size()));
+    }
+
+    private Block covering(long windowStart, long windowEnd) {
+        Map.Entry<Long, Block> floor = blocks.floorEntry(windowStart);
+        if (floor == null || floor.getValue().getWindowEnd() < windowEnd) {
+            return null;
+        }
+        return floor.getValue();
+    }
+
+    private CandleRecords slice(Block block, int from, int to) throws IOException {
+        if (from == 0 && to == block.getCount()) {
+            return records(block);
+        }
+        return records(new Block(block.getWindowStart(), block.getWindowEnd(),
+                block.getRecordsOffset() + (long) from * CandleRecords.RECORD_BYTES, to - from));
+    }
+
+    private static int lowerBound(CandleRecords records, long time) {
+        int low = 0;
+        int high = records.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (records.time(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    @Value
+    public static class Block {
+        long windowStart;
+        long windowEnd;
+        long recordsOffset;
+        int count;
+    }
+}
@@ -0,0 +1,168 @@
+package org.cache;
+
+import lombok.Value;
+import org.candles.CandleResampler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded in-memory candle cache that lives for the lifetime of a warm Lambda container.
+ * <p>
+ * Entries are keyed by (pair, granularity, window) where the window is given by the start times of its first
+ * and last candle. A window whose last candle is still open, or closed less than {@link #settleMillis} ago, is
+ * only kept for a short, granularity-derived TTL; windows of settled candles never change and are kept until
+ * evicted. When an open window expires,
+ * {@code CandleService} only asks the upstream for the candles from its last one on and merges them onto the
+ * closed ones. The cache is bounded by the total number of candles it holds rather than by the number of entries.
+ *
+ * @param <V> cached representation of a window, e.g. a parsed series or the raw upstream JSON
+ */
+public class CandleCache<V> {
+
+    private static final long MIN_OPEN_TTL_MILLIS = 5_000L;
+    private static final long MAX_OPEN_TTL_MILLIS = 60_000L;
+    private static final long CLOSED_TTL_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long MIN_SETTLE_MILLIS = 5L * 60 * 1000;
+    private static final long MAX_SETTLE_MILLIS = 60L * 60 * 1000;
+
+    private final long maxCandles;
+    private final ToIntFunction<V> weigher;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long candleCount;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public CandleCache(long maxCandles, ToIntFunction<V> weigher) {
+        this(maxCandles, weigher, System::currentTimeMillis);
+    }
+
+    public CandleCache(long maxCandles, ToIntFunction<V> weigher, LongSupplier clock) {
+        if (maxCandles <= 0) {
+            throw new IllegalArgumentException("maxCandles must be positive");
+        }
+        this.maxCandles = maxCandles;
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /**
+     * Start (epoch seconds) of the candle that is currently open for the given granularity.
+     */
+    public static long currentBucket(long nowMillis, int granularity) {
+        return CandleResampler.bucketStart(nowMillis / 1000, granularity);
+    }
+
+    /**
+     * How long after a candle closes before its values are taken as final. Coinbase can still revise a candle
+     * that has just closed (late trades, finalization), so until then it is neither cached long nor archived.
+     */
+    public static long settleMillis(int granularity) {
+        return Math.min(MAX_SETTLE_MILLIS, Math.max(MIN_SETTLE_MILLIS, granularity * 1000L));
+    }
+
+    /**
+     * Whether the candle starting at {@code candleStart} has closed and settled.
+     */
+    public static boolean isSettled(long nowMillis, int granularity, long candleStart) {
+        return (candleStart + granularity) * 1000L + settleMillis(granularity) <= nowMillis;
+    }
+
+    public synchronized V get(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        Key key = new Key(tradingPair, granularity, windowStart, windowEnd);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.getExpiresAt() <= clock.getAsLong()) {
+            remove(key);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.getValue();
+    }
+
+    public synchronized void put(String tradingPair, int granularity, long windowStart, long windowEnd, V value) {
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        if (weight > maxCandles) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Key key = new Key(tradingPair, granularity, windowStart, windowEnd);
+        remove(key);
+        entries.put(key, new Entry<>(value, weight, expiresAt(now, granularity, windowEnd)));
+        candleCount += weight;
+        evictIfNeeded();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), entries.size(), candleCount, maxCandles);
+    }
+
+    private long expiresAt(long now, int granularity, long lastCandleStart) {
+        if (isSettled(now, granularity, lastCandleStart)) {
+            // Every candle in the window has closed and settled, so the data can no longer change upstream.
+            return now + CLOSED_TTL_MILLIS;
+        }
+        long bucketEndMillis = (lastCandleStart + granularity) * 1000L;
+        long openTtl = Math.min(MAX_OPEN_TTL_MILLIS, Math.max(MIN_OPEN_TTL_MILLIS, granularity * 1000L / 10));
+        if (bucketEndMillis <= now) {
+            return Math.min(now + openTtl, bucketEndMillis + settleMillis(granularity));
+        }
+        return Math.min(now + openTtl, bucketEndMillis);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, Entry<V>>> it = entries.entrySet().iterator();
+        while (candleCount > maxCandles && it.hasNext()) {
+            Entry<V> eldest = it.next().getValue();
+            it.remove();
+            candleCount -= eldest.getWeight();
+            evictions.increment();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            candleCount -= removed.getWeight();
+        }
+    }
+
+    @Value
+    private static class Key {
+        String tradingPair;
+        int granularity;
+        long windowStart;
+        long windowEnd;
+    }
+
+    @Value
+    private static class Entry<V> {
+        V value;
+        int weight;
+        long expiresAt;
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+        long expirations;
+        int entries;
+        long candles;
+        long maxCandles;
+    }
+}
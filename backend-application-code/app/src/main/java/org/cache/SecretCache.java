@@ -0,0 +1,131 @@
+package org.cache;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds a value loaded from a slow or flaky source (a secret) and serves it without locking once loaded.
+ * <p>
+ * Only the very first load blocks callers. Once the value is {@code refreshAfterMillis} old a single
+ * background reload is started on {@code executor} while callers keep getting the current value; a failed
+ * reload is logged, the last good value stays in use, and the next attempt waits at least
+ * {@value #RETRY_AFTER_FAILURE_MILLIS} ms (or the refresh interval, if shorter). Reloads forced ahead of schedule
+ * (see {@link #forceRefresh}) are rate limited the same way.
+ */
+@Slf4j
+public class SecretCache<T> {
+
+    static final long RETRY_AFTER_FAILURE_MILLIS = 30_000;
+    static final long MIN_FORCED_REFRESH_INTERVAL_MILLIS = 60_000;
+
+    private final Supplier<T> loader;
+    private final long refreshAfterMillis;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Object firstLoadLock = new Object();
+
+    private volatile Loaded<T> current;
+    private volatile long nextRefreshAt;
+    private volatile long nextForcedRefreshAt;
+
+    public SecretCache(Supplier<T> loader, long refreshAfterMillis, Executor executor) {
+        this(loader, refreshAfterMillis, executor, System::currentTimeMillis);
+    }
+
+    public SecretCache(Supplier<T> loader, long refreshAfterMillis, Executor executor, LongSupplier clock) {
+        if (refreshAfterMillis <= 0) {
+            throw new IllegalArgumentException("refreshAfterMillis must be positive");
+        }
+        this.loader = loader;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * The current value, loading it on first use. Throws whatever the loader throws only while no value has
+     * ever been loaded.
+     */
+    public T get() {
+        Loaded<T> loaded = current;
+        if (loaded == null) {
+            return loadFirst();
+        }
+        if (clock.getAsLong() >= nextRefreshAt) {
+            refreshInBackground();
+        }
+        return loaded.getValue();
+    }
+
+    /**
+     * Reloads now, on the calling thread. On failure the previous value is kept and the error is rethrown.
+     */
+    public T refresh() {
+        T value = loader.get();
+        long now = clock.getAsLong();
+        current = new Loaded<>(value, now);
+        nextRefreshAt = now + refreshAfterMillis;
+        return value;
+    }
+
+    /**
+     * Starts a background reload ahead of schedule, e.g. because the upstream rejected the current value. This is
+     * a no-op within {@value #MIN_FORCED_REFRESH_INTERVAL_MILLIS} ms of the last load or forced reload, and while a
+     * failed reload's retry delay runs, so a value that stays rejected doesn't turn every call into a load.
+     */
+    public void forceRefresh() {
+        long now = clock.getAsLong();
+        Loaded<T> loaded = current;
+        if (now < nextForcedRefreshAt || (loaded != null && now - loaded.getLoadedAt() < MIN_FORCED_REFRESH_INTERVAL_MILLIS)) {
+            return;
+        }
+        nextForcedRefreshAt = now + MIN_FORCED_REFRESH_INTERVAL_MILLIS;
+        refreshInBackground();
+    }
+
+    /**
+     * Starts a background reload unless one is already running.
+     */
+    public void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    nextRefreshAt = clock.getAsLong() + Math.min(refreshAfterMillis, RETRY_AFTER_FAILURE_MILLIS);
+                    nextForcedRefreshAt = Math.max(nextForcedRefreshAt, nextRefreshAt);
+                    Loaded<T> loaded = current;
+                    log.warn("Secret refresh failed, still serving the value loaded {} ms ago: {}",
+                            loaded != null ? clock.getAsLong() - loaded.getLoadedAt() : -1, e.toString());
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            log.warn("Could not schedule secret refresh: {}", e.toString());
+        }
+    }
+
+    private T loadFirst() {
+        synchronized (firstLoadLock) {
+            Loaded<T> loaded = current;
+            return loaded != null ? loaded.getValue() : refresh();
+        }
+    }
+
+    @Value
+    private static class Loaded<T> {
+        T value;
+        long loadedAt;
+    }
+}
@@ -0,0 +1,33 @@
+package org.candles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque polling cursor: the start time of the last candle a client received, bound to the pair and granularity
+ * it was issued for. The next poll resumes from that candle so a candle that was still open is sent again with
+ * its final values.
+ */
+public final class CandleCursor {
+
+    private CandleCursor() {
+    }
+
+    public static String encode(String tradingPair, int granularity, long lastCandleTime) {
+        String plain = tradingPair + ":" + granularity + ":" + lastCandleTime;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The candle time encoded in {@code cursor}; throws {@link IllegalArgumentException} when the cursor is
+     * malformed or was issued for another pair or granularity.
+     */
+    public static long decode(String cursor, String tradingPair, int granularity) {
+        String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int timeSeparator = plain.lastIndexOf(':');
+        if (timeSeparator < 0 || !plain.substring(0, timeSeparator).equals(tradingPair + ":" + granularity)) {
+            throw new IllegalArgumentException("Cursor was not issued for " + tradingPair + " at " + granularity);
+        }
+        return Long.parseLong(plain.substring(timeSeparator + 1));
+    }
+}
@@ -0,0 +1,104 @@
+package org.candles;
+
+import java.util.Arrays;
+
+/**
+ * Builds coarser candles from finer ones: open of the first candle in a bucket, close of the last, the extreme
+ * high and low, and the summed volume.
+ * <p>
+ * Buckets are aligned to the Unix epoch like upstream candles, except whole-week granularities, which start on
+ * Monday 00:00 UTC.
+ */
+public final class CandleResampler {
+
+    /**
+     * Granularities the upstream serves directly, finest first.
+     */
+    private static final int[] NATIVE_GRANULARITIES = {60, 300, 900, 3600, 21600, 86400};
+
+    private static final int SECONDS_PER_WEEK = 7 * 86400;
+    private static final long FIRST_MONDAY = 4 * 86400L; // 1970-01-05T00:00:00Z
+
+    private CandleResampler() {
+    }
+
+    public static boolean isNative(int granularity) {
+        for (int nativeGranularity : NATIVE_GRANULARITIES) {
+            if (nativeGranularity == granularity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The coarsest native granularity that {@code granularity} can be built from, or -1 when there is none.
+     */
+    public static int sourceGranularity(int granularity) {
+        for (int i = NATIVE_GRANULARITIES.length - 1; i >= 0; i--) {
+            if (granularity > 0 && granularity % NATIVE_GRANULARITIES[i] == 0) {
+                return NATIVE_GRANULARITIES[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Native granularities finer than {@code granularity} that it can be built from, closest first.
+     */
+    public static int[] finerNativeGranularities(int granularity) {
+        int count = 0;
+        int[] finer = new int[NATIVE_GRANULARITIES.length];
+        for (int i = NATIVE_GRANULARITIES.length - 1; i >= 0; i--) {
+            if (NATIVE_GRANULARITIES[i] < granularity && granularity % NATIVE_GRANULARITIES[i] == 0) {
+                finer[count++] = NATIVE_GRANULARITIES[i];
+            }
+        }
+        return Arrays.copyOf(finer, count);
+    }
+
+    /**
+     * Start of the bucket containing {@code time} (epoch seconds).
+     */
+    public static long bucketStart(long time, int granularity) {
+        return time - Math.floorMod(time - origin(granularity), granularity);
+    }
+
+    /**
+     * A time at which a {@code granularity} bucket starts.
+     */
+    public static long origin(int granularity) {
+        return granularity % SECONDS_PER_WEEK == 0 ? FIRST_MONDAY : 0;
+    }
+
+    /**
+     * Aggregates {@code source} into {@code granularity} buckets. The source granularity must divide
+     * {@code granularity}; buckets with no source candles are omitted, as upstream does.
+     */
+    public static CandleSeries resample(CandleSeries source, int granularity) {
+        int size = source.size();
+        if (size == 0) {
+            return source;
+        }
+        CandleSeries.Builder builder = CandleSeries.builder(
+                (int) Math.min(size, (source.lastTime() - source.firstTime()) / granularity + 1));
+        int i = 0;
+        while (i < size) {
+            long bucket = bucketStart(source.time(i), granularity);
+            long next = bucket + granularity;
+            double open = source.open(i);
+            double low = source.low(i);
+            double high = source.high(i);
+            double volume = 0;
+            int j = i;
+            for (; j < size && source.time(j) < next; j++) {
+                low = Math.min(low, source.low(j));
+                high = Math.max(high, source.high(j));
+                volume += source.volume(j);
+            }
+            builder.add(bucket, low, high, open, source.close(j - 1), volume);
+            i = j;
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,305 @@
+package org.candles;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar OHLCV series held in parallel primitive arrays, sorted oldest first with unique timestamps.
+ * <p>
+ * Instances are immutable once built and are shared freely between the cache, the archive and responses.
+ * The JSON form is the Coinbase candle layout, newest first: {@code [[time, low, high, open, close, volume], ...]}.
+ */
+@JsonSerialize(using = CandleSeriesJson.Serializer.class)
+@JsonDeserialize(using = CandleSeriesJson.Deserializer.class)
+public final class CandleSeries {
+
+    private static final CandleSeries EMPTY = new CandleSeries(new long[0], new double[0], new double[0], new double[0],
+            new double[0], new double[0], 0);
+
+    private final long[] times;
+    private final double[] lows;
+    private final double[] highs;
+    private final double[] opens;
+    private final double[] closes;
+    private final double[] volumes;
+    private final int size;
+
+    private CandleSeries(long[] times, double[] lows, double[] highs, double[] opens, double[] closes, double[] volumes, int size) {
+        this.times = times;
+        this.lows = lows;
+        this.highs = highs;
+        this.opens = opens;
+        this.closes = closes;
+        this.volumes = volumes;
+        this.size = size;
+    }
+
+    public static CandleSeries empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long time(int index) {
+        return times[index];
+    }
+
+    public double low(int index) {
+        return lows[index];
+    }
+
+    public double high(int index) {
+        return highs[index];
+    }
+
+    public double open(int index) {
+        return opens[index];
+    }
+
+    public double close(int index) {
+        return closes[index];
+    }
+
+    public double volume(int index) {
+        return volumes[index];
+    }
+
+    public long firstTime() {
+        return times[0];
+    }
+
+    public long lastTime() {
+        return times[size - 1];
+    }
+
+    /**
+     * Index of the first candle starting at or after {@code time}; {@code size()} if there is none.
+     */
+    public int lowerBound(long time) {
+        int index = Arrays.binarySearch(times, 0, size, time);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Candles whose start time lies within [start, end].
+     */
+    public CandleSeries between(long start, long end) {
+        int from = lowerBound(start);
+        int to = end == Long.MAX_VALUE ? size : lowerBound(end + 1);
+        return slice(from, to);
+    }
+
+    public CandleSeries slice(int from, int to) {
+        if (from == 0 && to == size) {
+            return this;
+        }
+        if (from >= to) {
+            return EMPTY;
+        }
+        return new CandleSeries(Arrays.copyOfRange(times, from, to), Arrays.copyOfRange(lows, from, to),
+                Arrays.copyOfRange(highs, from, to), Arrays.copyOfRange(opens, from, to),
+                Arrays.copyOfRange(closes, from, to), Arrays.copyOfRange(volumes, from, to), to - from);
+    }
+
+    /**
+     * Merges several series into one, keeping the candle from the later series when timestamps collide.
+     */
+    public static CandleSeries merge(List<CandleSeries> parts) {
+        int total = 0;
+        int nonEmpty = 0;
+        CandleSeries last = EMPTY;
+        for (CandleSeries part : parts) {
+            total += part.size;
+            if (part.size > 0) {
+                nonEmpty++;
+                last = part;
+            }
+        }
+        if (nonEmpty <= 1) {
+            return last;
+        }
+        Builder builder = builder(total);
+        for (CandleSeries part : parts) {
+            for (int i = 0; i < part.size; i++) {
+                builder.add(part.times[i], part.lows[i], part.highs[i], part.opens[i], part.closes[i], part.volumes[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CandleSeries)) return false;
+        CandleSeries other = (CandleSeries) o;
+        return size == other.size
+                && Arrays.equals(times, 0, size, other.times, 0, size)
+                && Arrays.equals(lows, 0, size, other.lows, 0, size)
+                && Arrays.equals(highs, 0, size, other.highs, 0, size)
+                && Arrays.equals(opens, 0, size, other.opens, 0, size)
+                && Arrays.equals(closes, 0, size, other.closes, 0, size)
+                && Arrays.equals(volumes, 0, size, other.volumes, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + Long.hashCode(times[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return size == 0 ? "CandleSeries(size=0)"
+                : String.format("CandleSeries(size=%d, from=%d, to=%d)", size, times[0], times[size - 1]);
+    }
+
+    /**
+     * Accumulates candles in any order. {@link #build()} sorts them oldest first and drops duplicate
+     * timestamps, keeping the candle added last.
+     */
+    public static final class Builder {
+        private long[] times;
+        private double[] lows;
+        private double[] highs;
+        private double[] opens;
+        private double[] closes;
+        private double[] volumes;
+        private int size;
+        private boolean ascending = true;
+        private boolean descending = true;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            times = new long[capacity];
+            lows = new double[capacity];
+            highs = new double[capacity];
+            opens = new double[capacity];
+            closes = new double[capacity];
+            volumes = new double[capacity];
+        }
+
+        public Builder add(long time, double low, double high, double open, double close, double volume) {
+            if (size == times.length) {
+                grow();
+            }
+            if (size > 0) {
+                long previous = times[size - 1];
+                ascending &= time > previous;
+                descending &= time < previous;
+            }
+            times[size] = time;
+            lows[size] = low;
+            highs[size] = high;
+            opens[size] = open;
+            closes[size] = close;
+            volumes[size] = volume;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public CandleSeries build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (!ascending) {
+                if (descending) {
+                    reverse();
+                } else {
+                    sortAndDeduplicate();
+                }
+            }
+            CandleSeries series = new CandleSeries(times, lows, highs, opens, closes, volumes, size);
+            times = null;
+            return series;
+        }
+
+        private void grow() {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+
+        private void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                long time = times[i];
+                times[i] = times[j];
+                times[j] = time;
+                swap(lows, i, j);
+                swap(highs, i, j);
+                swap(opens, i, j);
+                swap(closes, i, j);
+                swap(volumes, i, j);
+            }
+        }
+
+        private void sortAndDeduplicate() {
+            // Only reached for out-of-order input (e.g. overlapping windows), so a boxed index sort is fine here.
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            long[] keys = times;
+            Arrays.sort(order, (a, b) -> {
+                int byTime = Long.compare(keys[a], keys[b]);
+                return byTime != 0 ? byTime : Integer.compare(a, b);
+            });
+            long[] sortedTimes = new long[size];
+            double[] sortedLows = new double[size];
+            double[] sortedHighs = new double[size];
+            double[] sortedOpens = new double[size];
+            double[] sortedCloses = new double[size];
+            double[] sortedVolumes = new double[size];
+            int out = 0;
+            for (int k = 0; k < size; k++) {
+                int i = order[k];
+                if (out > 0 && sortedTimes[out - 1] == times[i]) {
+                    out--;
+                }
+                sortedTimes[out] = times[i];
+                sortedLows[out] = lows[i];
+                sortedHighs[out] = highs[i];
+                sortedOpens[out] = opens[i];
+                sortedCloses[out] = closes[i];
+                sortedVolumes[out] = volumes[i];
+                out++;
+            }
+            times = sortedTimes;
+            lows = sortedLows;
+            highs = sortedHighs;
+            opens = sortedOpens;
+            closes = sortedCloses;
+            volumes = sortedVolumes;
+            size = out;
+        }
+
+        private static void swap(double[] values, int i, int j) {
+            double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
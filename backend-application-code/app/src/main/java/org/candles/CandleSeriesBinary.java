@@ -0,0 +1,239 @@
+package org.candles;
+
+import java.util.Arrays;
+
+/**
+ * Compact columnar encoding of a {@link CandleSeries}, about a quarter the size of its JSON. Candles are oldest
+ * first (the JSON form is newest first) and every column is delta encoded as zigzag varints:
+ * <pre>
+ *   byte    version (1)
+ *   byte    price decimals p: 0-8, or 255 for raw doubles
+ *   byte    volume decimals v: 0-8, or 255 for raw doubles
+ *   varint  candle count n
+ *   n x zigzag varint   time, each the difference from the previous (the first from 0)
+ *   4 x n x zigzag varint   low, high, open and close columns as round(price * 10^p), each the difference from
+ *                           the previous value in its column (the first from 0)
+ *   n x zigzag varint   volume as round(volume * 10^v), delta encoded the same way
+ * </pre>
+ * A column group with decimals 255 instead holds n little-endian IEEE doubles per column, undeltaed. The
+ * decimals are the fewest that give every value back exactly, so decoding is lossless.
+ */
+public final class CandleSeriesBinary {
+
+    public static final String MEDIA_TYPE = "application/vnd.whatif.candles";
+
+    static final byte VERSION = 1;
+    static final int RAW_DOUBLES = 255;
+
+    private static final int MAX_DECIMALS = 8;
+    private static final double[] POWERS = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+    // Scaled values stay integers a double holds exactly
+    private static final double MAX_SCALED = 1L << 53;
+
+    private CandleSeriesBinary() {
+    }
+
+    public static byte[] encode(CandleSeries series) {
+        int size = series.size();
+        int priceDecimals = decimals(series, 0, 4);
+        int volumeDecimals = decimals(series, 4, 5);
+        Output out = new Output(16 + size * 16);
+        out.write(VERSION);
+        out.write(priceDecimals);
+        out.write(volumeDecimals);
+        out.writeVarint(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long time = series.time(i);
+            out.writeVarint(zigzag(time - previous));
+            previous = time;
+        }
+        for (int column = 0; column < 4; column++) {
+            writeColumn(out, series, column, priceDecimals);
+        }
+        writeColumn(out, series, 4, volumeDecimals);
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException when {@code bytes} isn't an encoded series
+     */
+    public static CandleSeries decode(byte[] bytes) {
+        Input in = new Input(bytes);
+        if (in.read() != VERSION) {
+            throw new IllegalArgumentException("Unsupported candle encoding version");
+        }
+        int priceDecimals = in.read();
+        int volumeDecimals = in.read();
+        long count = in.readVarint();
+        if (count < 0 || count > bytes.length) {
+            throw new IllegalArgumentException("Invalid candle count " + count);
+        }
+        int size = (int) count;
+        long[] times = new long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += unzigzag(in.readVarint());
+            times[i] = previous;
+        }
+        double[][] columns = new double[5][];
+        for (int column = 0; column < 5; column++) {
+            columns[column] = readColumn(in, size, column < 4 ? priceDecimals : volumeDecimals);
+        }
+        CandleSeries.Builder builder = CandleSeries.builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(times[i], columns[0][i], columns[1][i], columns[2][i], columns[3][i], columns[4][i]);
+        }
+        return builder.build();
+    }
+
+    // Fewest decimals that give back every value of columns [from, to) exactly, or RAW_DOUBLES
+    private static int decimals(CandleSeries series, int from, int to) {
+        int decimals = 0;
+        for (int column = from; column < to; column++) {
+            for (int i = 0; i < series.size(); i++) {
+                double value = value(series, column, i);
+                while (!exact(value, decimals)) {
+                    if (++decimals > MAX_DECIMALS) {
+                        return RAW_DOUBLES;
+                    }
+                }
+            }
+        }
+        return decimals;
+    }
+
+    private static boolean exact(double value, int decimals) {
+        double scaled = value * POWERS[decimals];
+        return Math.abs(scaled) < MAX_SCALED && Math.round(scaled) / POWERS[decimals] == value;
+    }
+
+    private static double value(CandleSeries series, int column, int index) {
+        switch (column) {
+            case 0:
+                return series.low(index);
+            case 1:
+                return series.high(index);
+            case 2:
+                return series.open(index);
+            case 3:
+                return series.close(index);
+            default:
+                return series.volume(index);
+        }
+    }
+
+    private static void writeColumn(Output out, CandleSeries series, int column, int decimals) {
+        if (decimals == RAW_DOUBLES) {
+            for (int i = 0; i < series.size(); i++) {
+                out.writeLong(Double.doubleToLongBits(value(series, column, i)));
+            }
+            return;
+        }
+        double scale = POWERS[decimals];
+        long previous = 0;
+        for (int i = 0; i < series.size(); i++) {
+            long scaled = Math.round(value(series, column, i) * scale);
+            out.writeVarint(zigzag(scaled - previous));
+            previous = scaled;
+        }
+    }
+
+    private static double[] readColumn(Input in, int size, int decimals) {
+        double[] values = new double[size];
+        if (decimals == RAW_DOUBLES) {
+            for (int i = 0; i < size; i++) {
+                values[i] = Double.longBitsToDouble(in.readLong());
+            }
+            return values;
+        }
+        if (decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Invalid decimals " + decimals);
+        }
+        double scale = POWERS[decimals];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += unzigzag(in.readVarint());
+            values[i] = previous / scale;
+        }
+        return values;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        private Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void write(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int position;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int read() {
+            if (position == bytes.length) {
+                throw new IllegalArgumentException("Truncated candle encoding");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                value |= (long) read() << shift;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.candles;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * Streaming Jackson codec for {@link CandleSeries}. Values go straight between the token stream and the
+ * primitive arrays; no per-candle objects are created in either direction.
+ */
+public final class CandleSeriesJson {
+
+    private static final int TYPICAL_RESPONSE_CANDLES = 300;
+
+    private CandleSeriesJson() {
+    }
+
+    /**
+     * Reads {@code [[time, low, high, open, close, volume], ...]} in any order. The parser must be positioned
+     * on (or just before) the outer START_ARRAY.
+     */
+    public static CandleSeries read(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of candles but found " + token);
+        }
+        CandleSeries.Builder builder = CandleSeries.builder(TYPICAL_RESPONSE_CANDLES);
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a candle array but found " + token);
+            }
+            long time = nextTime(parser);
+            double low = nextNumber(parser);
+            double high = nextNumber(parser);
+            double open = nextNumber(parser);
+            double close = nextNumber(parser);
+            double volume = nextNumber(parser);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                // Tolerate extra trailing fields in a candle.
+                parser.skipChildren();
+            }
+            builder.add(time, low, high, open, close, volume);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the series newest first, matching the upstream candle layout.
+     */
+    public static void write(CandleSeries series, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (int i = series.size() - 1; i >= 0; i--) {
+            generator.writeStartArray();
+            generator.writeNumber(series.time(i));
+            generator.writeNumber(series.low(i));
+            generator.writeNumber(series.high(i));
+            generator.writeNumber(series.open(i));
+            generator.writeNumber(series.close(i));
+            generator.writeNumber(series.volume(i));
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private static long nextTime(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return (long) parser.getDoubleValue();
+        }
+        throw new IOException("Expected a numeric candle time but found " + token);
+    }
+
+    private static double nextNumber(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return Double.parseDouble(parser.getText());
+        }
+        throw new IOException("Expected a numeric candle field but found " + token);
+    }
+
+    public static class Serializer extends JsonSerializer<CandleSeries> {
+        @Override
+        public void serialize(CandleSeries series, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            write(series, generator);
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<CandleSeries> {
+        @Override
+        public CandleSeries deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return read(parser);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.candles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Dense table of daily closes for one pair, indexed by UTC day since the first traded day. Days without trades
+ * carry the previous close forward, so every day from the first to the last has a value and a lookup is one
+ * array index. Instances are immutable; {@link #append(CandleSeries, long)} and {@link #revise} return a new index.
+ */
+public final class DailyCloseIndex {
+
+    public static final int SECONDS_PER_DAY = 86400;
+
+    private static final int MAGIC = 0x44434C49; // "DCLI"
+    private static final int VERSION = 1;
+
+    private final long firstDay;
+    private final double[] closes;
+
+    private DailyCloseIndex(long firstDay, double[] closes) {
+        this.firstDay = firstDay;
+        this.closes = closes;
+    }
+
+    /**
+     * Builds an index from daily candles, extended through {@code throughDay}; returns null when there are no
+     * candles up to that day.
+     */
+    public static DailyCloseIndex build(CandleSeries daily, long throughDay) {
+        if (daily.isEmpty() || Math.floorDiv(daily.firstTime(), SECONDS_PER_DAY) > throughDay) {
+            return null;
+        }
+        long firstDay = Math.floorDiv(daily.firstTime(), SECONDS_PER_DAY);
+        return new DailyCloseIndex(firstDay, new double[0]).append(daily, throughDay);
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    public long getLastDay() {
+        return firstDay + closes.length - 1;
+    }
+
+    public int size() {
+        return closes.length;
+    }
+
+    public boolean contains(long epochDay) {
+        return epochDay >= firstDay && epochDay <= getLastDay();
+    }
+
+    public double close(long epochDay) {
+        if (!contains(epochDay)) {
+            throw new IndexOutOfBoundsException("Day " + epochDay + " outside " + firstDay + ".." + getLastDay());
+        }
+        return closes[(int) (epochDay - firstDay)];
+    }
+
+    /**
+     * Appends the days after the current last day up to {@code throughDay}, taking closes from {@code daily} and
+     * forward-filling days it has no candle for. Candles after {@code throughDay} are ignored.
+     */
+    public DailyCloseIndex append(CandleSeries daily, long throughDay) {
+        if (throughDay <= getLastDay()) {
+            return this;
+        }
+        int from = daily.lowerBound((getLastDay() + 1) * SECONDS_PER_DAY);
+        if (closes.length == 0 && from >= daily.size()) {
+            return this;
+        }
+        double[] extended = Arrays.copyOf(closes, (int) (throughDay - firstDay + 1));
+        int next = closes.length;
+        double previous = closes.length > 0 ? closes[closes.length - 1] : daily.close(from);
+        for (int i = from; i < daily.size(); i++) {
+            int day = (int) (Math.floorDiv(daily.time(i), SECONDS_PER_DAY) - firstDay);
+            if (day >= extended.length) {
+                break;
+            }
+            Arrays.fill(extended, next, day, previous);
+            extended[day] = daily.close(i);
+            previous = extended[day];
+            next = day + 1;
+        }
+        Arrays.fill(extended, next, extended.length, previous);
+        return new DailyCloseIndex(firstDay, extended);
+    }
+
+    /**
+     * Like {@link #append(CandleSeries, long)}, but first overwrites the indexed days from {@code fromDay} on,
+     * starting at the first of them that {@code daily} has a candle for, so closes revised upstream after they
+     * were indexed are picked up. Days before that candle keep their indexed close.
+     */
+    public DailyCloseIndex revise(CandleSeries daily, long fromDay, long throughDay) {
+        int first = daily.lowerBound(Math.max(fromDay, firstDay) * SECONDS_PER_DAY);
+        long revisedFrom = first < daily.size() ? Math.floorDiv(daily.time(first), SECONDS_PER_DAY) : Long.MAX_VALUE;
+        if (revisedFrom > getLastDay()) {
+            return append(daily, throughDay);
+        }
+        DailyCloseIndex kept = new DailyCloseIndex(firstDay, Arrays.copyOf(closes, (int) (revisedFrom - firstDay)));
+        return kept.append(daily, Math.max(throughDay, getLastDay()));
+    }
+
+    public static DailyCloseIndex read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes to a sibling temp file and moves it into place so readers never see a partial file.
+     */
+    public void write(Path path) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static DailyCloseIndex read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a daily close index");
+        }
+        long firstDay = in.readLong();
+        double[] closes = new double[in.readInt()];
+        for (int i = 0; i < closes.length; i++) {
+            closes[i] = in.readDouble();
+        }
+        return new DailyCloseIndex(firstDay, closes);
+    }
+
+    private void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(firstDay);
+        out.writeInt(closes.length);
+        for (double close : closes) {
+            out.writeDouble(close);
+        }
+        out.flush();
+    }
+}
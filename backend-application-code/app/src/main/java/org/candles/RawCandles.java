@@ -0,0 +1,60 @@
+package org.candles;
+
+import lombok.Value;
+
+/**
+ * Upstream candle JSON that has passed a cheap structural check and can be returned to clients verbatim.
+ */
+@Value
+public class RawCandles {
+    String json;
+    int size;
+
+    /**
+     * Single pass over the body checking that it is an array of flat numeric arrays. Returns null when the body
+     * doesn't look like that (error objects, strings, deeper nesting), in which case callers fall back to a full
+     * parse.
+     */
+    public static RawCandles check(String body) {
+        if (body == null) {
+            return null;
+        }
+        int depth = 0;
+        int candles = 0;
+        boolean started = false;
+        for (int i = 0, length = body.length(); i < length; i++) {
+            char c = body.charAt(i);
+            switch (c) {
+                case '[':
+                    if (started && depth == 0) {
+                        return null;
+                    }
+                    started = true;
+                    depth++;
+                    if (depth == 2) {
+                        candles++;
+                    } else if (depth > 2) {
+                        return null;
+                    }
+                    break;
+                case ']':
+                    depth--;
+                    if (depth < 0) {
+                        return null;
+                    }
+                    break;
+                case '{':
+                case '}':
+                case '"':
+                    return null;
+                default:
+                    // Between candles only separators are allowed; numbers must sit inside a candle array.
+                    boolean separator = Character.isWhitespace(c) || (depth == 1 && c == ',');
+                    if (depth < 2 && !separator) {
+                        return null;
+                    }
+            }
+        }
+        return started && depth == 0 ? new RawCandles(body, candles) : null;
+    }
+}
@@ -8,10 +8,12 @@ import lombok.ToString;
 public class CoinbaseConfig {
     private final String apiKey;
     private final String frontendBaseUrl;
+    private final String chargesUrl;
 
-    public CoinbaseConfig(String apiKey, String frontendBaseUrl) {
+    public CoinbaseConfig(String apiKey, String frontendBaseUrl, String chargesUrl) {
         this.apiKey = apiKey;
         this.frontendBaseUrl = frontendBaseUrl;
+        this.chargesUrl = chargesUrl;
     }
 }
 
@@ -0,0 +1,30 @@
+package org.config;
+
+import java.util.function.Function;
+
+/**
+ * Named settings from the Lambda environment, or from the lookup a local harness passes to
+ * {@link org.dagger.SysEnvModule}. Unset and blank values give the default.
+ */
+public class Environment {
+
+    private final Function<String, String> lookup;
+
+    public Environment(Function<String, String> lookup) {
+        this.lookup = lookup;
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = lookup.apply(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = lookup.apply(name);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+}
@@ -3,42 +3,192 @@ package org.dagger;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dagger.Module;
 import dagger.Provides;
+import lombok.extern.slf4j.Slf4j;
+import org.archive.CandleArchive;
+import org.cache.CandleCache;
+import org.candles.CandleSeries;
+import org.candles.RawCandles;
+import org.config.Environment;
+import org.service.CandleBackfill;
+import org.service.CandleBatch;
+import org.service.CandleService;
+import org.service.CircuitBreaker;
 import org.service.CoinbaseExchangeService;
+import org.metrics.StageMetrics;
+import org.service.DailyCloseIndexService;
+import org.service.ProductCatalog;
+import org.service.RequestHedger;
+import org.service.UpstreamRateLimiter;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.IOException;
 import java.net.http.HttpClient;
-import java.time.Duration;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+// The HttpClient and ObjectMapper are shared with the other modules of the component. Tunables are read through the
+// Environment from SysEnvModule, so a harness's lookup reaches them too.
 @Module
+@Slf4j
 public class CoinbaseExchangeModule {
 
-    @Provides
-    @Singleton
-    public HttpClient provideHttpClient() {
-        return HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+    private static final long DEFAULT_SECRET_REFRESH_SECONDS = 900L;
+    private static final long DEFAULT_CANDLE_CACHE_MAX_CANDLES = 100_000L;
+    private static final int DEFAULT_CANDLE_BACKFILL_CONCURRENCY = 8;
+    private static final int DEFAULT_CANDLE_BATCH_CONCURRENCY = 4;
+    private static final String DEFAULT_DAILY_CLOSE_PAIRS = "BTC-USD,ETH-USD";
+    // Coinbase Exchange's documented limits: public endpoints 10 requests/s bursting to 15, private 15 bursting to 30
+    private static final long DEFAULT_PUBLIC_RATE_LIMIT = 10L;
+    private static final int DEFAULT_PUBLIC_RATE_BURST = 15;
+    private static final long DEFAULT_PRIVATE_RATE_LIMIT = 15L;
+    private static final int DEFAULT_PRIVATE_RATE_BURST = 30;
+    static final long DEFAULT_RATE_LIMIT_MAX_WAIT_MILLIS = 250L;
+    // A sixth of the router's 30 s function timeout, so a hung connection fails the call (and a paged backfill
+    // its page) instead of the whole invocation
+    private static final long DEFAULT_EXCHANGE_TIMEOUT_MILLIS = 5_000L;
+    // Half of the last 20 calls failing opens the breaker for 30 s
+    static final int CIRCUIT_WINDOW = 20;
+    static final double CIRCUIT_FAILURE_RATIO = 0.5;
+    static final long DEFAULT_CIRCUIT_OPEN_SECONDS = 30L;
+    // Hedges go out after the recent p95 (300 ms until there are enough samples), for at most 10% of calls
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 300L;
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50L;
+    private static final long MAX_HEDGE_DELAY_MILLIS = 2_000L;
+    private static final long DEFAULT_HEDGE_MAX_PERCENT = 10L;
+    private static final long DEFAULT_PRODUCT_CATALOG_REFRESH_SECONDS = 3_600L;
+
+    private final Supplier<SecretsManagerClient> secretsManagerClient;
+
+    public CoinbaseExchangeModule() {
+        this(() -> SecretsManagerClient.builder().build());
+    }
+
+    // Lets local harnesses serve the API keys from a stand-in
+    public CoinbaseExchangeModule(Supplier<SecretsManagerClient> secretsManagerClient) {
+        this.secretsManagerClient = secretsManagerClient;
     }
 
     @Provides
     @Singleton
     public SecretsManagerClient provideSecretsManagerClient() {
-        return SecretsManagerClient.builder().build();
+        return secretsManagerClient.get();
     }
 
     @Provides
     @Singleton
     public CoinbaseExchangeService provideCoinbaseExchangeService(HttpClient httpClient, ObjectMapper objectMapper, SecretsManagerClient secretsManagerClient,
-                                                                  @Named("CoinbaseApiSecretArn") String coinbaseApiSecretArn) {
-        return new CoinbaseExchangeService(httpClient, objectMapper, secretsManagerClient, coinbaseApiSecretArn);
+                                                                  @Named(SysEnvModule.COINBASE_EXCHANGE_API_URL) String apiEndpoint,
+                                                                  @Named("CoinbaseApiSecretArn") String coinbaseApiSecretArn,
+                                                                  @Named("CoinbaseApiSecretRefreshSeconds") long secretRefreshSeconds,
+                                                                  StageMetrics metrics,
+                                                                  @Named(CoinbaseExchangeService.PUBLIC_RATE_LIMITER) UpstreamRateLimiter publicLimiter,
+                                                                  @Named(CoinbaseExchangeService.PRIVATE_RATE_LIMITER) UpstreamRateLimiter privateLimiter,
+                                                                  CircuitBreaker breaker, RequestHedger hedger,
+                                                                  @Named(CoinbaseExchangeService.REQUEST_TIMEOUT_MILLIS) long requestTimeoutMillis) {
+        return new CoinbaseExchangeService(httpClient, objectMapper, secretsManagerClient, apiEndpoint, coinbaseApiSecretArn,
+                secretRefreshSeconds, metrics, publicLimiter, privateLimiter, breaker, hedger, requestTimeoutMillis);
     }
 
     @Provides
-    @Named("CoinbaseApiSecretArn")
-    public String provideCoinbaseApiSecretArn() {
-        // This will be provided by the Lambda environment variable
-        return System.getenv("COINBASE_API_SECRET_ARN");
+    @Singleton
+    public CircuitBreaker provideCircuitBreaker(Environment env) {
+        return circuitBreaker("exchange", env);
+    }
+
+    @Provides
+    @Singleton
+    public RequestHedger provideRequestHedger(Environment env) {
+        return new RequestHedger(DEFAULT_HEDGE_DELAY_MILLIS, MIN_HEDGE_DELAY_MILLIS, MAX_HEDGE_DELAY_MILLIS,
+                env.getLong("COINBASE_HEDGE_MAX_PERCENT", DEFAULT_HEDGE_MAX_PERCENT) / 100.0);
+    }
+
+    @Provides
+    @Named(CoinbaseExchangeService.REQUEST_TIMEOUT_MILLIS)
+    public long provideExchangeRequestTimeoutMillis(Environment env) {
+        return env.getLong("COINBASE_EXCHANGE_TIMEOUT_MILLIS", DEFAULT_EXCHANGE_TIMEOUT_MILLIS);
+    }
+
+    @Provides
+    @Singleton
+    @Named(CoinbaseExchangeService.PUBLIC_RATE_LIMITER)
+    public UpstreamRateLimiter providePublicRateLimiter(Environment env) {
+        return new UpstreamRateLimiter("public",
+                env.getLong("COINBASE_PUBLIC_RATE_LIMIT", DEFAULT_PUBLIC_RATE_LIMIT),
+                env.getInt("COINBASE_PUBLIC_RATE_BURST", DEFAULT_PUBLIC_RATE_BURST),
+                env.getLong("COINBASE_RATE_LIMIT_MAX_WAIT_MILLIS", DEFAULT_RATE_LIMIT_MAX_WAIT_MILLIS));
+    }
+
+    @Provides
+    @Singleton
+    @Named(CoinbaseExchangeService.PRIVATE_RATE_LIMITER)
+    public UpstreamRateLimiter providePrivateRateLimiter(Environment env) {
+        return new UpstreamRateLimiter("private",
+                env.getLong("COINBASE_PRIVATE_RATE_LIMIT", DEFAULT_PRIVATE_RATE_LIMIT),
+                env.getInt("COINBASE_PRIVATE_RATE_BURST", DEFAULT_PRIVATE_RATE_BURST),
+                env.getLong("COINBASE_RATE_LIMIT_MAX_WAIT_MILLIS", DEFAULT_RATE_LIMIT_MAX_WAIT_MILLIS));
+    }
+
+    @Provides
+    @Named("CoinbaseApiSecretRefreshSeconds")
+    public long provideCoinbaseApiSecretRefreshSeconds(Environment env) {
+        return env.getLong("COINBASE_API_SECRET_REFRESH_SECONDS", DEFAULT_SECRET_REFRESH_SECONDS);
+    }
+
+    @Provides
+    @Singleton
+    public CandleService provideCandleService(CoinbaseExchangeService exchangeService, ObjectMapper objectMapper, StageMetrics metrics,
+                                              Environment env) {
+        long maxCachedCandles = env.getLong("CANDLE_CACHE_MAX_CANDLES", DEFAULT_CANDLE_CACHE_MAX_CANDLES);
+        return new CandleService(
+                new CandleCache<>(maxCachedCandles, CandleSeries::size),
+                new CandleCache<>(maxCachedCandles, RawCandles::getSize),
+                candleArchive(env.get("CANDLE_ARCHIVE_DIR", null)),
+                new CandleBackfill(env.getInt("CANDLE_BACKFILL_CONCURRENCY", DEFAULT_CANDLE_BACKFILL_CONCURRENCY)),
+                exchangeService,
+                objectMapper,
+                metrics);
+    }
+
+    @Provides
+    @Singleton
+    public DailyCloseIndexService provideDailyCloseIndexService(CandleService candleService, Environment env) {
+        String directory = env.get("DAILY_CLOSE_INDEX_DIR", null);
+        return new DailyCloseIndexService(
+                candleService,
+                directory == null ? null : Paths.get(directory),
+                DailyCloseIndexService.parsePairs(env.get("DAILY_CLOSE_PAIRS", DEFAULT_DAILY_CLOSE_PAIRS)));
+    }
+
+    @Provides
+    @Singleton
+    public CandleBatch provideCandleBatch(CandleService candleService, ProductCatalog productCatalog, Environment env) {
+        return new CandleBatch(candleService, productCatalog, env.getInt("CANDLE_BATCH_CONCURRENCY", DEFAULT_CANDLE_BATCH_CONCURRENCY));
+    }
+
+    @Provides
+    @Singleton
+    public ProductCatalog provideProductCatalog(CoinbaseExchangeService exchangeService, ObjectMapper objectMapper, Environment env) {
+        return new ProductCatalog(exchangeService::getProducts, objectMapper,
+                TimeUnit.SECONDS.toMillis(env.getLong("PRODUCT_CATALOG_REFRESH_SECONDS", DEFAULT_PRODUCT_CATALOG_REFRESH_SECONDS)));
+    }
+
+    private static CandleArchive candleArchive(String directory) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new CandleArchive(Paths.get(directory));
+        } catch (IOException e) {
+            log.error("Candle archive disabled, cannot use directory {}", directory, e);
+            return null;
+        }
+    }
+
+    static CircuitBreaker circuitBreaker(String name, Environment env) {
+        return new CircuitBreaker(name, CIRCUIT_WINDOW, CIRCUIT_FAILURE_RATIO,
+                TimeUnit.SECONDS.toMillis(env.getLong("COINBASE_CIRCUIT_OPEN_SECONDS", DEFAULT_CIRCUIT_OPEN_SECONDS)));
     }
-}
\ No newline at end of file
+}
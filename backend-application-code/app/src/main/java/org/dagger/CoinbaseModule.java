@@ -5,7 +5,10 @@ import dagger.Module;
 import dagger.Provides;
 import lombok.extern.slf4j.Slf4j;
 import org.config.CoinbaseConfig;
+import org.config.Environment;
+import org.metrics.StageMetrics;
 import org.service.CoinbaseService;
+import org.service.UpstreamRateLimiter;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -13,15 +16,23 @@ import java.net.http.HttpClient;
 import java.time.Duration;
 
 import static org.dagger.SysEnvModule.COINBASE_COMMERCE_API_KEY_ENV_NAME;
+import static org.dagger.SysEnvModule.COINBASE_COMMERCE_CHARGES_URL;
 
 @Module
 @Slf4j
 public class CoinbaseModule {
 
+    // Commerce doesn't document a limit; charge creation is user-initiated and low volume
+    private static final long DEFAULT_COMMERCE_RATE_LIMIT = 5L;
+    private static final int DEFAULT_COMMERCE_RATE_BURST = 10;
+
+    // HTTP/2 multiplexes a candle fan-out over one connection per host. The default executor only completes the
+    // responses, and the number in flight at once is already bounded by the fan-out concurrency and rate limiters.
     @Provides
     @Singleton
     HttpClient provideHttpClient() {
         return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
     }
@@ -29,19 +40,23 @@ public class CoinbaseModule {
     @Provides
     @Singleton
     CoinbaseConfig provideCoinbaseConfig(@Named(COINBASE_COMMERCE_API_KEY_ENV_NAME)
-                                         final String coinbaseCommerceApiKey) {
+                                         final String coinbaseCommerceApiKey,
+                                         @Named(COINBASE_COMMERCE_CHARGES_URL) final String chargesUrl,
+                                         Environment env) {
         log.info("What is the API Key {}", coinbaseCommerceApiKey);
-        String frontendBase = System.getenv("FRONTEND_BASE_URL");
-        if (frontendBase == null || frontendBase.isBlank()) {
-            frontendBase = "http://localhost:3000";
-        }
-        return new CoinbaseConfig(coinbaseCommerceApiKey, frontendBase);
+        String frontendBase = env.get("FRONTEND_BASE_URL", "http://localhost:3000");
+        return new CoinbaseConfig(coinbaseCommerceApiKey, frontendBase, chargesUrl);
     }
 
     @Provides
     @Singleton
-    CoinbaseService provideCoinbaseService(HttpClient httpClient, ObjectMapper mapper, CoinbaseConfig config) {
-        return new CoinbaseService(httpClient, mapper, config);
+    CoinbaseService provideCoinbaseService(HttpClient httpClient, ObjectMapper mapper, CoinbaseConfig config, StageMetrics metrics,
+                                           Environment env) {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter("commerce",
+                env.getLong("COINBASE_COMMERCE_RATE_LIMIT", DEFAULT_COMMERCE_RATE_LIMIT),
+                env.getInt("COINBASE_COMMERCE_RATE_BURST", DEFAULT_COMMERCE_RATE_BURST),
+                env.getLong("COINBASE_RATE_LIMIT_MAX_WAIT_MILLIS", CoinbaseExchangeModule.DEFAULT_RATE_LIMIT_MAX_WAIT_MILLIS));
+        return new CoinbaseService(httpClient, mapper, config, metrics, limiter, CoinbaseExchangeModule.circuitBreaker("commerce", env));
     }
 }
 
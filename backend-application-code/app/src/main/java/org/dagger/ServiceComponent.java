@@ -1,15 +1,29 @@
 package org.dagger;
 
 import dagger.Component;
+import org.config.Environment;
+import org.metrics.StageMetrics;
+import org.service.CandleBatch;
+import org.service.CandleService;
+import org.service.CoinbaseExchangeService;
 import org.service.CoinbaseService;
+import org.service.DailyCloseIndexService;
+import org.service.ProductCatalog;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.inject.Singleton;
 
 
 @Singleton
-@Component(modules = {CoinbaseModule.class, SysEnvModule.class, UtilityModule.class})
+@Component(modules = {CoinbaseModule.class, CoinbaseExchangeModule.class, SysEnvModule.class, UtilityModule.class})
 public interface ServiceComponent {
     CoinbaseService getCoinbaseService();
+    CoinbaseExchangeService getCoinbaseExchangeService();
+    CandleService getCandleService();
+    DailyCloseIndexService getDailyCloseIndexService();
+    CandleBatch getCandleBatch();
+    ProductCatalog getProductCatalog();
     ObjectMapper getObjectMapper();
+    StageMetrics getStageMetrics();
+    Environment getEnvironment();
 }
\ No newline at end of file
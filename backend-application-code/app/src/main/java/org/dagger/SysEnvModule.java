@@ -2,18 +2,80 @@ package org.dagger;
 
 import dagger.Module;
 import dagger.Provides;
+import org.config.Environment;
 
 import javax.inject.Named;
+import java.util.function.Function;
 
+// Values from the Lambda environment. Local harnesses pass their own lookup to point the services elsewhere; the
+// other modules read their tunables through the same lookup via the provided Environment.
 @Module
 public class SysEnvModule {
     public static final String COINBASE_COMMERCE_API_KEY_ENV_NAME = "COINBASE_COMMERCE_API_KEY_ENV_NAME";
+    public static final String COINBASE_COMMERCE_CHARGES_URL = "CoinbaseCommerceChargesUrl";
+    public static final String COINBASE_EXCHANGE_API_URL = "CoinbaseExchangeApiUrl";
+    public static final String STAGE_METRICS_MODE = "StageMetricsMode";
+    public static final String METRICS_NAMESPACE = "MetricsNamespace";
+
     private static final String COINBASE_COMMERCE_API_KEY_ENV = "COINBASE_COMMERCE_API_KEY_ENV";
+    private static final String COINBASE_COMMERCE_CHARGES_URL_ENV = "COINBASE_COMMERCE_CHARGES_URL";
+    private static final String COINBASE_EXCHANGE_API_URL_ENV = "COINBASE_EXCHANGE_API_URL";
+    private static final String DEFAULT_COMMERCE_CHARGES_URL = "https://api.commerce.coinbase.com/charges";
+    private static final String DEFAULT_EXCHANGE_API_URL = "https://api-public.sandbox.exchange.coinbase.com";
+
+    private static final String DEFAULT_METRICS_NAMESPACE = "WhatIfInvested";
+
+    private final Environment env;
+
+    public SysEnvModule() {
+        this(System::getenv);
+    }
+
+    public SysEnvModule(Function<String, String> env) {
+        this.env = new Environment(env);
+    }
+
+    @Provides
+    public Environment provideEnvironment() {
+        return env;
+    }
 
     @Provides
     @Named(COINBASE_COMMERCE_API_KEY_ENV_NAME)
     public String provideCoinbaseCommerceApiKey() {
-        return System.getenv(COINBASE_COMMERCE_API_KEY_ENV);
+        // Empty when unset so a component serving only the exchange routes still builds
+        return env.get(COINBASE_COMMERCE_API_KEY_ENV, "");
+    }
+
+    @Provides
+    @Named(COINBASE_COMMERCE_CHARGES_URL)
+    public String provideCoinbaseCommerceChargesUrl() {
+        return env.get(COINBASE_COMMERCE_CHARGES_URL_ENV, DEFAULT_COMMERCE_CHARGES_URL);
+    }
+
+    @Provides
+    @Named(COINBASE_EXCHANGE_API_URL)
+    public String provideCoinbaseExchangeApiUrl() {
+        return env.get(COINBASE_EXCHANGE_API_URL_ENV, DEFAULT_EXCHANGE_API_URL);
+    }
+
+    @Provides
+    @Named("CoinbaseApiSecretArn")
+    public String provideCoinbaseApiSecretArn() {
+        // This will be provided by the Lambda environment variable; empty when unset so the component still builds
+        return env.get("COINBASE_API_SECRET_ARN", "");
+    }
+
+    @Provides
+    @Named(STAGE_METRICS_MODE)
+    public String provideStageMetricsMode() {
+        // off, histogram or emf
+        return env.get("STAGE_METRICS", "off");
     }
 
+    @Provides
+    @Named(METRICS_NAMESPACE)
+    public String provideMetricsNamespace() {
+        return env.get("METRICS_NAMESPACE", DEFAULT_METRICS_NAMESPACE);
+    }
 }
@@ -6,7 +6,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import dagger.Module;
 import dagger.Provides;
+import org.metrics.StageMetrics;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 @Module
@@ -21,4 +23,11 @@ public class UtilityModule {
         objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         return objectMapper;
     }
+
+    @Provides
+    @Singleton
+    public StageMetrics provideStageMetrics(@Named(SysEnvModule.STAGE_METRICS_MODE) String mode,
+                                            @Named(SysEnvModule.METRICS_NAMESPACE) String namespace) {
+        return new StageMetrics(StageMetrics.parseMode(mode), namespace);
+    }
 }
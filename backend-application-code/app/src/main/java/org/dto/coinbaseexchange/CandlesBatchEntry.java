@@ -0,0 +1,26 @@
+package org.dto.coinbaseexchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.candles.CandleSeries;
+
+// One keyed result of a getCandlesBatch request: either candles or an error
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandlesBatchEntry {
+    private int status;
+    private CandleSeries candles;
+    private String error;
+
+    public static CandlesBatchEntry ok(CandleSeries candles) {
+        return new CandlesBatchEntry(200, candles, null);
+    }
+
+    public static CandlesBatchEntry failed(int status, String error) {
+        return new CandlesBatchEntry(status, null, error);
+    }
+}
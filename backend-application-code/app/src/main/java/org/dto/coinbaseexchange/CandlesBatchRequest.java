@@ -0,0 +1,27 @@
+package org.dto.coinbaseexchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandlesBatchRequest extends ProxyRequest {
+    private List<Item> requests;
+
+    // Same fields as a single getCandles request
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String tradingPair;
+        private int granularity;
+        private Long start;
+        private Long end;
+    }
+}
@@ -11,5 +11,9 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class CandlesRequest extends ProxyRequest {
     private String tradingPair;
-    private int granularity;
+    private int granularity; // Seconds per candle; native upstream sizes or any multiple of 60 (e.g. 14400, 604800)
+    private Long start; // Optional range start, epoch seconds
+    private Long end;   // Optional range end, epoch seconds (defaults to now when start is set)
+    private Long since;     // Optional: only candles starting at or after this time, epoch seconds
+    private String cursor;  // Optional: cursor from the previous incremental response, instead of since
 }
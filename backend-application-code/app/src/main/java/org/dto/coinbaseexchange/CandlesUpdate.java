@@ -0,0 +1,15 @@
+package org.dto.coinbaseexchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.candles.CandleSeries;
+
+// Response to an incremental getCandles poll
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandlesUpdate {
+    private CandleSeries candles; // New or updated candles only, newest first
+    private String cursor;        // Pass back as CandlesRequest.cursor on the next poll
+}
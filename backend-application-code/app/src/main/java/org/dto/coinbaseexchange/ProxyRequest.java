@@ -11,7 +11,9 @@ import lombok.Data;
 )
 @JsonSubTypes({
         @JsonSubTypes.Type(value = CandlesRequest.class, name = "getCandles"),
-        @JsonSubTypes.Type(value = OrderProxyRequest.class, name = "placeOrder")
+        @JsonSubTypes.Type(value = CandlesBatchRequest.class, name = "getCandlesBatch"),
+        @JsonSubTypes.Type(value = OrderProxyRequest.class, name = "placeOrder"),
+        @JsonSubTypes.Type(value = WhatIfRequest.class, name = "whatIf")
 })
 @Data
 public class ProxyRequest {
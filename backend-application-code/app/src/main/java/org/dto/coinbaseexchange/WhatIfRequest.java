@@ -0,0 +1,19 @@
+package org.dto.coinbaseexchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WhatIfRequest extends ProxyRequest {
+    private String tradingPair;
+    private Double amount;       // Quote currency invested at the start, e.g. USD for BTC-USD
+    private Long start;          // Purchase time, epoch seconds
+    private Long end;            // Valuation time, epoch seconds (defaults to now)
+    private Integer granularity; // Candle size used for the curve and drawdown (defaults to one day)
+    private Integer points;      // Maximum number of value curve points to return (0 or absent for none)
+}
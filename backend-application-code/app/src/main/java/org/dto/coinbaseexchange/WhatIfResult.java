@@ -0,0 +1,20 @@
+package org.dto.coinbaseexchange;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class WhatIfResult {
+    private String tradingPair;
+    private Double amount;
+    private Long start;        // Time of the candle the purchase was priced at
+    private Long end;          // Time of the candle the position was valued at
+    private Double buyPrice;   // Close of the first candle
+    private Double finalPrice; // Close of the last candle
+    private Double units;      // Base currency bought
+    private Double finalValue;
+    private Double roi;        // (finalValue - amount) / amount
+    private Double maxDrawdown; // Largest peak-to-trough fall of the position's value, as a fraction of the peak
+    private List<WhatIfPoint> curve;
+}
@@ -0,0 +1,40 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
+
+/**
+ * Request handling shared by the POJO and streaming Lambda entry points.
+ */
+public interface ApiHandler {
+
+    ApiResponse handle(ApiRequest request);
+
+    /**
+     * {@link #handle} for a POJO proxy event, timing the invocation and the response serialization. An event whose
+     * body can't be decoded gets a 400 without reaching {@link #handle}.
+     */
+    default APIGatewayProxyResponseEvent handleEvent(APIGatewayProxyRequestEvent event, StageMetrics metrics) {
+        StageMetrics.Invocation invocation = metrics.begin();
+        long start = metrics.start();
+        ApiRequest request;
+        try {
+            request = ApiRequest.from(event);
+        } catch (IllegalArgumentException e) {
+            metrics.finish(invocation, null, 400);
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(400)
+                    .withHeaders(ResponseWriter.JSON_HEADERS)
+                    .withBody(ResponseWriter.BAD_REQUEST);
+        }
+        metrics.record(Stage.REQUEST_PARSE, start);
+        ApiResponse response = handle(request);
+        start = metrics.start();
+        APIGatewayProxyResponseEvent result = response.toEvent();
+        metrics.record(Stage.RESPONSE_SERIALIZE, start);
+        metrics.finish(invocation, request.route(), response.getStatusCode());
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * The parts of an API Gateway proxy event the handlers use. A base64 encoded body is decoded (API Gateway only
+ * sends one for a request with a binary media type), and of the headers only {@code Accept} is kept, for content
+ * negotiation. Of the request context only its presence is kept: API Gateway sets it on every event, scheduled
+ * invocations don't.
+ */
+@Value
+public class ApiRequest {
+
+    private static final ApiRequest EMPTY = new ApiRequest(null, null, null, null, null, false);
+
+    String resource;
+    String path;
+    String httpMethod;
+    String body;
+    String accept;
+    boolean fromGateway;
+
+    /**
+     * The API Gateway resource (e.g. {@code /charges}), falling back to the request path without a trailing
+     * slash when the event wasn't built from a resource.
+     */
+    public String route() {
+        String route = resource != null ? resource : path;
+        if (route != null && route.length() > 1 && route.endsWith("/")) {
+            route = route.substring(0, route.length() - 1);
+        }
+        return route;
+    }
+
+    /**
+     * Whether {@code mediaType} is the first type in the {@code Accept} header. That is the one API Gateway looks
+     * at to decide whether a base64 response body goes out as bytes, so it is the one that counts here.
+     */
+    public boolean prefers(String mediaType) {
+        if (accept == null) {
+            return false;
+        }
+        int end = accept.indexOf(',');
+        String first = end < 0 ? accept : accept.substring(0, end);
+        int parameters = first.indexOf(';');
+        return (parameters < 0 ? first : first.substring(0, parameters)).trim().equalsIgnoreCase(mediaType);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the body is flagged base64 encoded but isn't valid base64
+     */
+    public static ApiRequest from(APIGatewayProxyRequestEvent event) {
+        if (event == null) {
+            return EMPTY;
+        }
+        String accept = null;
+        if (event.getHeaders() != null) {
+            for (Map.Entry<String, String> header : event.getHeaders().entrySet()) {
+                if ("Accept".equalsIgnoreCase(header.getKey())) {
+                    accept = header.getValue();
+                }
+            }
+        }
+        return new ApiRequest(event.getResource(), event.getPath(), event.getHttpMethod(),
+                decode(event.getBody(), Boolean.TRUE.equals(event.getIsBase64Encoded())), accept,
+                event.getRequestContext() != null);
+    }
+
+    /**
+     * Reads the proxy event straight from the invocation payload, skipping headers, request context and every
+     * other field without building anything for them.
+     *
+     * @throws JsonParseException when the payload is not a JSON object
+     * @throws IllegalArgumentException when the body is flagged base64 encoded but isn't valid base64
+     */
+    public static ApiRequest read(InputStream input, JsonFactory jsonFactory) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return EMPTY;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a proxy event object");
+            }
+            String resource = null;
+            String path = null;
+            String httpMethod = null;
+            String body = null;
+            String accept = null;
+            boolean base64 = false;
+            boolean fromGateway = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                switch (field) {
+                    case "resource":
+                        resource = text(parser, token);
+                        break;
+                    case "path":
+                        path = text(parser, token);
+                        break;
+                    case "httpMethod":
+                        httpMethod = text(parser, token);
+                        break;
+                    case "body":
+                        body = text(parser, token);
+                        break;
+                    case "isBase64Encoded":
+                        base64 = token == JsonToken.VALUE_TRUE;
+                        break;
+                    case "requestContext":
+                        fromGateway = token == JsonToken.START_OBJECT;
+                        parser.skipChildren();
+                        break;
+                    case "headers":
+                        if (token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String header = parser.getCurrentName();
+                            token = parser.nextToken();
+                            if ("Accept".equalsIgnoreCase(header)) {
+                                accept = text(parser, token);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new ApiRequest(resource, path, httpMethod, decode(body, base64), accept, fromGateway);
+        }
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static String decode(String body, boolean base64) {
+        if (body == null || !base64) {
+            return body;
+        }
+        try {
+            return new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Request body is not valid base64: " + e.getMessage(), e);
+        }
+    }
+}
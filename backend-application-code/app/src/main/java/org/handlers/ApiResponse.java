@@ -0,0 +1,69 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A handler's answer: status and a JSON body that is either already serialized (passed through from upstream,
+ * or a constant) or a payload still to be serialized, or else a binary body (e.g. encoded candles) that
+ * goes out base64 encoded. Created by a {@link ResponseWriter}, which supplies the headers. It becomes an
+ * {@link APIGatewayProxyResponseEvent} for the POJO handlers or is written as the proxy response envelope
+ * straight to the stream for the streaming ones.
+ */
+@Getter
+public final class ApiResponse {
+
+    @Getter(AccessLevel.NONE)
+    private final ResponseWriter writer;
+    private final int statusCode;
+    private final String rawBody;
+    private final Object payload;
+    private final byte[] binaryBody;
+    private final Map<String, String> headers;
+
+    ApiResponse(ResponseWriter writer, int statusCode, String rawBody, Object payload) {
+        this(writer, statusCode, rawBody, payload, null, writer.getHeaders());
+    }
+
+    ApiResponse(ResponseWriter writer, int statusCode, byte[] binaryBody, Map<String, String> headers) {
+        this(writer, statusCode, null, null, binaryBody, headers);
+    }
+
+    private ApiResponse(ResponseWriter writer, int statusCode, String rawBody, Object payload, byte[] binaryBody,
+                        Map<String, String> headers) {
+        this.writer = writer;
+        this.statusCode = statusCode;
+        this.rawBody = rawBody;
+        this.payload = payload;
+        this.binaryBody = binaryBody;
+        this.headers = headers;
+    }
+
+    /**
+     * This response with {@code extra} added to the writer's headers.
+     */
+    public ApiResponse withHeaders(Map<String, String> extra) {
+        Map<String, String> merged = new LinkedHashMap<>(headers);
+        merged.putAll(extra);
+        return new ApiResponse(writer, statusCode, rawBody, payload, binaryBody, Map.copyOf(merged));
+    }
+
+    public APIGatewayProxyResponseEvent toEvent() {
+        return writer.toEvent(this);
+    }
+
+    /**
+     * Writes {@code {"statusCode":..,"headers":{..},"body":".."}}. A payload is serialized to UTF-8 bytes and
+     * escaped into the body field from there, never becoming a String; a binary body is base64 encoded straight
+     * into it, with {@code "isBase64Encoded":true}.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        writer.writeTo(this, output);
+    }
+}
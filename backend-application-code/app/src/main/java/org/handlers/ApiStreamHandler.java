@@ -0,0 +1,55 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.dagger.ServiceComponent;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Runs an {@link ApiHandler} on the raw invocation stream: only the fields in {@link ApiRequest} are read from
+ * the event, and the response envelope is written directly to the output, so the runtime never maps the event
+ * or response POJOs.
+ */
+@Slf4j
+public abstract class ApiStreamHandler implements RequestStreamHandler {
+
+    private final ApiHandler handler;
+    private final ObjectMapper objectMapper;
+    private final ResponseWriter responses;
+    private final StageMetrics metrics;
+
+    protected ApiStreamHandler(ApiHandler handler, ServiceComponent serviceComponent) {
+        this.handler = handler;
+        this.objectMapper = serviceComponent.getObjectMapper();
+        this.responses = new ResponseWriter(objectMapper, ResponseWriter.JSON_HEADERS);
+        this.metrics = serviceComponent.getStageMetrics();
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        StageMetrics.Invocation invocation = metrics.begin();
+        long start = metrics.start();
+        ApiRequest request = null;
+        try {
+            request = ApiRequest.read(input, objectMapper.getFactory());
+            metrics.record(Stage.REQUEST_PARSE, start);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable proxy event: {}", e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unreadable request body: {}", e.getMessage());
+        }
+        ApiResponse response = request != null ? handler.handle(request) : responses.rawJson(400, ResponseWriter.BAD_REQUEST);
+        start = metrics.start();
+        response.writeTo(output);
+        metrics.record(Stage.RESPONSE_SERIALIZE, start);
+        metrics.finish(invocation, request != null ? request.route() : null, response.getStatusCode());
+    }
+}
@@ -4,151 +4,218 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleCursor;
+import org.candles.CandleResampler;
+import org.candles.CandleSeries;
+import org.candles.CandleSeriesBinary;
+import org.candles.DailyCloseIndex;
+import org.dagger.ServiceComponent;
+import org.dto.coinbaseexchange.CandlesBatchRequest;
 import org.dto.coinbaseexchange.CandlesRequest;
+import org.dto.coinbaseexchange.CandlesUpdate;
 import org.dto.coinbaseexchange.OrderProxyRequest;
 import org.dto.coinbaseexchange.ProxyRequest;
-import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
-import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueRequest;
-import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueResponse;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
+import org.dto.coinbaseexchange.WhatIfRequest;
+import org.dto.coinbaseexchange.WhatIfResult;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
+import org.service.CandleBackfill;
+import org.service.CandleBatch;
+import org.service.CandleService;
+import org.service.CoinbaseExchangeService;
+import org.service.CoinbaseUpstreamException;
+import org.service.DailyCloseIndexService;
+import org.service.ProductCatalog;
+import org.service.WhatIfCalculator;
+import org.startup.StartupPrimer;
+import org.util.DaggerComponentUtil;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
-public class CoinbaseExchangeProxy implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class CoinbaseExchangeProxy implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, ApiHandler {
 
-    private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
-    private final SecretsManagerClient secretsManagerClient;
+    private final ResponseWriter responses;
+    private final CoinbaseExchangeService exchangeService;
+    private final CandleService candleService;
+    private final DailyCloseIndexService dailyCloseIndexService;
+    private final CandleBatch candleBatch;
+    private final ProductCatalog productCatalog;
+    private final StageMetrics metrics;
 
-    private String apiKey;
-    private String apiSecret;
-    private String apiPassphrase;
+    private static final int DEFAULT_WHAT_IF_GRANULARITY = 86400;
+    private static final int MAX_WHAT_IF_POINTS = 1000;
 
-    private static final String API_ENDPOINT = "https://api-public.sandbox.exchange.coinbase.com";
+    private static final String METHOD_NOT_ALLOWED = ResponseWriter.errorBody("Method Not Allowed");
+    private static final String PAIR_AND_GRANULARITY_REQUIRED = ResponseWriter.errorBody(CandleBatch.PAIR_AND_GRANULARITY_REQUIRED);
+    private static final String INVALID_CURSOR = ResponseWriter.errorBody("Invalid cursor.");
+    private static final String RANGE_TOO_LARGE = ResponseWriter.errorBody(String.format("Requested range exceeds %d candles.", CandleBackfill.MAX_CANDLES_PER_RANGE));
+    private static final String END_BEFORE_START = ResponseWriter.errorBody("end must not be before start.");
+    private static final String BATCH_SIZE_INVALID = ResponseWriter.errorBody(String.format("requests must hold between 1 and %d items.", CandleBatch.MAX_ITEMS));
+    private static final String FUNDS_REQUIRED = ResponseWriter.errorBody("Funds are required for market buy orders.");
+    private static final String SIZE_REQUIRED = ResponseWriter.errorBody("Size is required for market sell orders.");
+    private static final String INVALID_SIDE = ResponseWriter.errorBody("Invalid order side. Must be 'buy' or 'sell'.");
+    private static final String WHAT_IF_FIELDS_REQUIRED = ResponseWriter.errorBody("tradingPair, a positive amount and start are required.");
+    private static final String WHAT_IF_RANGE_INVALID = ResponseWriter.errorBody("start must be in the past and before end, with a granularity that is a positive multiple of 60.");
+    private static final String POINTS_OUT_OF_RANGE = ResponseWriter.errorBody(String.format("points must be between 0 and %d.", MAX_WHAT_IF_POINTS));
+    // Candle responses depend on content negotiation, and API Gateway compresses them for clients that accept it
+    private static final Map<String, String> VARY = Map.of("Vary", "Accept, Accept-Encoding");
+    private static final String UNKNOWN_PAIR = ResponseWriter.errorBody("Unknown tradingPair.");
+    private static final String UNKNOWN_PRODUCT = ResponseWriter.errorBody("Unknown productId.");
+    private static final String UNSUPPORTED_REQUEST = ResponseWriter.errorBody("Unsupported proxy request type");
 
     public CoinbaseExchangeProxy() {
-        this.httpClient = HttpClient.newBuilder().connectTimeout(java.time.Duration.ofSeconds(10)).build();
-        this.objectMapper = new ObjectMapper();
-        this.secretsManagerClient = SecretsManagerClient.builder().build();
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.EXCHANGE));
     }
 
-    private synchronized void loadApiKeys() throws Exception {
-        if (apiKey != null && apiSecret != null && apiPassphrase != null) {
-            return; // Already loaded
-        }
+    CoinbaseExchangeProxy(final ServiceComponent serviceComponent) {
+        this.objectMapper = serviceComponent.getObjectMapper();
+        Map<String, String> headers = ResponseWriter.corsHeaders(
+                serviceComponent.getEnvironment().get("FRONTEND_BASE_URL", "*"), null);
+        this.responses = new ResponseWriter(objectMapper, headers);
+        this.exchangeService = serviceComponent.getCoinbaseExchangeService();
+        this.candleService = serviceComponent.getCandleService();
+        this.dailyCloseIndexService = serviceComponent.getDailyCloseIndexService();
+        this.candleBatch = serviceComponent.getCandleBatch();
+        this.productCatalog = serviceComponent.getProductCatalog();
+        this.metrics = serviceComponent.getStageMetrics();
+    }
 
-        String secretArn = System.getenv("COINBASE_API_SECRET_ARN");
-        if (secretArn == null) {
-            throw new RuntimeException("COINBASE_API_SECRET_ARN environment variable is not set.");
-        }
+    private ApiResponse json(int status, Object payload) {
+        return responses.json(status, payload);
+    }
 
-        GetSecretValueRequest getSecretValueRequest = GetSecretValueRequest.builder()
-                .secretId(secretArn)
-                .build();
-        GetSecretValueResponse getSecretValueResponse = secretsManagerClient.getSecretValue(getSecretValueRequest);
-
-        if (getSecretValueResponse.secretString() != null) {
-            Map<String, String> secretMap = objectMapper.readValue(getSecretValueResponse.secretString(), new TypeReference<Map<String, String>>() {});
-            apiKey = secretMap.get("apiKey");
-            apiSecret = secretMap.get("apiSecret");
-            apiPassphrase = secretMap.get("apiPassphrase");
-        } else {
-            throw new RuntimeException("Secret string is null.");
+    private ApiResponse rawJson(int status, String body) {
+        return responses.rawJson(status, body);
+    }
+
+    private ApiResponse error(int status, String message) {
+        return responses.error(status, message);
+    }
+
+    /**
+     * Candles in the compact binary encoding when the client asks for it, as JSON otherwise.
+     */
+    private ApiResponse candles(ApiRequest request, CandleSeries series) {
+        if (request.prefers(CandleSeriesBinary.MEDIA_TYPE)) {
+            return negotiated(responses.binary(200, CandleSeriesBinary.encode(series), CandleSeriesBinary.MEDIA_TYPE));
         }
+        return negotiated(json(200, series));
     }
 
-    private String createSignature(String timestamp, String method, String requestPath, String body) throws NoSuchAlgorithmException, InvalidKeyException {
-        String message = timestamp + method + requestPath + body;
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secret_key = new SecretKeySpec(Base64.getDecoder().decode(apiSecret), "HmacSHA256");
-        sha256_HMAC.init(secret_key);
-        return Base64.getEncoder().encodeToString(sha256_HMAC.doFinal(message.getBytes()));
+    private static ApiResponse negotiated(ApiResponse response) {
+        return response.withHeaders(VARY);
     }
 
-    private APIGatewayProxyResponseEvent json(int status, Object payload) {
-        APIGatewayProxyResponseEvent res = new APIGatewayProxyResponseEvent();
-        res.setStatusCode(status);
-        try {
-            res.setBody(objectMapper.writeValueAsString(payload));
-        } catch (JsonProcessingException e) {
-            res.setBody("{\"error\":\"Serialization error\"}");
+    // Shed, throttled and circuit-broken calls tell the client when to come back
+    private ApiResponse upstreamError(CoinbaseUpstreamException e, String message) {
+        ApiResponse response = error(e.getStatusCode(), message);
+        if (e.getRetryAfterSeconds() > 0) {
+            return ResponseWriter.retryAfter(response, e.getRetryAfterSeconds());
         }
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Access-Control-Allow-Origin", System.getenv("FRONTEND_BASE_URL") != null ? System.getenv("FRONTEND_BASE_URL") : "*");
-        headers.put("Access-Control-Allow-Methods", "OPTIONS,GET,POST");
-        res.setHeaders(headers);
-        return res;
+        return response;
     }
 
-    private Map<String, String> error(String message) {
-        Map<String, String> err = new HashMap<>();
-        err.put("error", message);
-        return err;
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
     }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
-        try {
-            loadApiKeys();
+        return handleEvent(request, metrics);
+    }
 
+    @Override
+    public ApiResponse handle(ApiRequest request) {
+        try {
             if (!"POST".equalsIgnoreCase(request.getHttpMethod())) {
-                return json(405, error("Method Not Allowed"));
+                return rawJson(405, METHOD_NOT_ALLOWED);
             }
 
+            long parseStart = metrics.start();
             ProxyRequest proxyRequest = objectMapper.readValue(request.getBody(), ProxyRequest.class);
+            metrics.record(Stage.REQUEST_PARSE, parseStart);
 
             if (proxyRequest instanceof CandlesRequest) {
                 CandlesRequest candlesRequest = (CandlesRequest) proxyRequest;
                 String tradingPair = candlesRequest.getTradingPair();
                 int granularity = candlesRequest.getGranularity();
 
-                String requestPath = String.format("/products/%s/candles?granularity=%d", tradingPair, granularity);
-                String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
-                String signature = createSignature(timestamp, "GET", requestPath, "");
-
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(API_ENDPOINT + requestPath))
-                        .header("CB-ACCESS-KEY", apiKey)
-                        .header("CB-ACCESS-SIGN", signature)
-                        .header("CB-ACCESS-TIMESTAMP", timestamp)
-                        .header("CB-ACCESS-PASSPHRASE", apiPassphrase)
-                        .header("Content-Type", "application/json")
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    List<List<Double>> rawCandles = objectMapper.readValue(response.body(), new TypeReference<List<List<Double>>>() {});
-                    return json(200, rawCandles);
-                } else {
-                    log.error("Failed to fetch candles: {} - {}", response.statusCode(), response.body());
-                    return json(response.statusCode(), error(String.format("Failed to fetch candles: %d - %s", response.statusCode(), response.body())));
+                if (tradingPair == null || tradingPair.isBlank() || CandleResampler.sourceGranularity(granularity) < 0) {
+                    return rawJson(400, PAIR_AND_GRANULARITY_REQUIRED);
                 }
+                tradingPair = productCatalog.normalize(tradingPair);
+                if (tradingPair == null) {
+                    return rawJson(400, UNKNOWN_PAIR);
+                }
+
+                try {
+                    if (candlesRequest.getSince() != null || candlesRequest.getCursor() != null) {
+                        long since;
+                        try {
+                            since = candlesRequest.getCursor() != null
+                                    ? CandleCursor.decode(candlesRequest.getCursor(), tradingPair, granularity)
+                                    : candlesRequest.getSince();
+                        } catch (IllegalArgumentException e) {
+                            return rawJson(400, INVALID_CURSOR);
+                        }
+                        if ((System.currentTimeMillis() / 1000 - since) / CandleResampler.sourceGranularity(granularity) > CandleBackfill.MAX_CANDLES_PER_RANGE) {
+                            return rawJson(400, RANGE_TOO_LARGE);
+                        }
+                        CandleSeries updates = await(candleService.getCandlesSince(tradingPair, granularity, since));
+                        long last = updates.isEmpty() ? since : updates.lastTime();
+                        return negotiated(json(200, new CandlesUpdate(updates, CandleCursor.encode(tradingPair, granularity, last))));
+                    }
+                    if (candlesRequest.getStart() == null) {
+                        if (request.prefers(CandleSeriesBinary.MEDIA_TYPE)) {
+                            return candles(request, await(candleService.getLatestCandles(tradingPair, granularity)));
+                        }
+                        // No transform requested: pass the upstream body through untouched.
+                        return negotiated(rawJson(200, await(candleService.getLatestCandlesJson(tradingPair, granularity)).getJson()));
+                    }
+
+                    long start = candlesRequest.getStart();
+                    long end = candlesRequest.getEnd() != null ? candlesRequest.getEnd() : System.currentTimeMillis() / 1000;
+                    if (end < start) {
+                        return rawJson(400, END_BEFORE_START);
+                    }
+                    if ((end - start) / CandleResampler.sourceGranularity(granularity) > CandleBackfill.MAX_CANDLES_PER_RANGE) {
+                        return rawJson(400, RANGE_TOO_LARGE);
+                    }
+                    return candles(request, await(candleService.getCandles(tradingPair, granularity, start, end)));
+                } catch (CoinbaseUpstreamException e) {
+                    log.error("Failed to fetch candles: {} - {}", e.getStatusCode(), e.getResponseBody());
+                    return upstreamError(e, String.format("Failed to fetch candles: %d - %s", e.getStatusCode(), e.getResponseBody()));
+                }
+            } else if (proxyRequest instanceof CandlesBatchRequest) {
+                List<CandlesBatchRequest.Item> items = ((CandlesBatchRequest) proxyRequest).getRequests();
+                if (items == null || items.isEmpty() || items.size() > CandleBatch.MAX_ITEMS) {
+                    return rawJson(400, BATCH_SIZE_INVALID);
+                }
+                return negotiated(json(200, await(candleBatch.fetch(items))));
             } else if (proxyRequest instanceof OrderProxyRequest) {
                 OrderProxyRequest orderRequest = (OrderProxyRequest) proxyRequest;
                 String side = orderRequest.getSide();
-                String productId = orderRequest.getProductId();
+                String productId = orderRequest.getProductId() != null ? productCatalog.normalize(orderRequest.getProductId()) : null;
                 String type = orderRequest.getType();
+                if (orderRequest.getProductId() != null && productId == null) {
+                    return rawJson(400, UNKNOWN_PRODUCT);
+                }
 
-                String requestPath = "/orders";
-                String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
                 Map<String, String> orderBody = new HashMap<>();
                 orderBody.put("side", side);
                 orderBody.put("product_id", productId);
@@ -157,47 +224,74 @@ public class CoinbaseExchangeProxy implements RequestHandler<APIGatewayProxyRequ
                 if ("buy".equalsIgnoreCase(side)) {
                     // For market buy orders, use 'funds'
                     if (orderRequest.getFunds() == null || orderRequest.getFunds().isEmpty()) {
-                        return json(400, error("Funds are required for market buy orders."));
+                        return rawJson(400, FUNDS_REQUIRED);
                     }
                     orderBody.put("funds", orderRequest.getFunds());
                 } else if ("sell".equalsIgnoreCase(side)) {
                     // For market sell orders, use 'size'
                     if (orderRequest.getSize() == null || orderRequest.getSize().isEmpty()) {
-                        return json(400, error("Size is required for market sell orders."));
+                        return rawJson(400, SIZE_REQUIRED);
                     }
                     orderBody.put("size", orderRequest.getSize());
                 } else {
-                    return json(400, error("Invalid order side. Must be 'buy' or 'sell'."));
+                    return rawJson(400, INVALID_SIDE);
                 }
 
-                String bodyString = objectMapper.writeValueAsString(orderBody);
-                String signature = createSignature(timestamp, "POST", requestPath, bodyString);
-
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(API_ENDPOINT + requestPath))
-                        .header("CB-ACCESS-KEY", apiKey)
-                        .header("CB-ACCESS-SIGN", signature)
-                        .header("CB-ACCESS-TIMESTAMP", timestamp)
-                        .header("CB-ACCESS-PASSPHRASE", apiPassphrase)
-                        .header("Content-Type", "application/json")
-                        .POST(HttpRequest.BodyPublishers.ofString(bodyString))
-                        .build();
+                try {
+                    return rawJson(200, await(exchangeService.placeOrder(orderBody)));
+                } catch (CoinbaseUpstreamException e) {
+                    log.error("Failed to place order: {} - {}", e.getStatusCode(), e.getResponseBody());
+                    return upstreamError(e, String.format("Failed to place order: %d - %s", e.getStatusCode(), e.getResponseBody()));
+                }
+            } else if (proxyRequest instanceof WhatIfRequest) {
+                WhatIfRequest whatIfRequest = (WhatIfRequest) proxyRequest;
+                String tradingPair = whatIfRequest.getTradingPair();
+                Double amount = whatIfRequest.getAmount();
+                Long start = whatIfRequest.getStart();
+                long now = System.currentTimeMillis() / 1000;
+                long end = whatIfRequest.getEnd() != null ? Math.min(whatIfRequest.getEnd(), now) : now;
+                int granularity = whatIfRequest.getGranularity() != null ? whatIfRequest.getGranularity() : DEFAULT_WHAT_IF_GRANULARITY;
+                int points = whatIfRequest.getPoints() != null ? whatIfRequest.getPoints() : 0;
 
-                HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+                if (tradingPair == null || tradingPair.isBlank() || amount == null || amount <= 0 || start == null) {
+                    return rawJson(400, WHAT_IF_FIELDS_REQUIRED);
+                }
+                tradingPair = productCatalog.normalize(tradingPair);
+                if (tradingPair == null) {
+                    return rawJson(400, UNKNOWN_PAIR);
+                }
+                if (CandleResampler.sourceGranularity(granularity) < 0 || start >= end) {
+                    return rawJson(400, WHAT_IF_RANGE_INVALID);
+                }
+                if ((end - start) / CandleResampler.sourceGranularity(granularity) > CandleBackfill.MAX_CANDLES_PER_RANGE) {
+                    return rawJson(400, RANGE_TOO_LARGE);
+                }
+                if (points < 0 || points > MAX_WHAT_IF_POINTS) {
+                    return rawJson(400, POINTS_OUT_OF_RANGE);
+                }
 
-                if (response.statusCode() == 200) {
-                    return json(200, objectMapper.readValue(response.body(), Object.class));
-                } else {
-                    log.error("Failed to place order: {} - {}", response.statusCode(), response.body());
-                    return json(response.statusCode(), error(String.format("Failed to place order: %d - %s", response.statusCode(), response.body())));
+                try {
+                    if (granularity == DailyCloseIndex.SECONDS_PER_DAY && dailyCloseIndexService.isIndexed(tradingPair)) {
+                        WhatIfResult indexed = await(dailyCloseIndexService.whatIf(tradingPair, amount, start, end, points));
+                        if (indexed != null) {
+                            return json(200, indexed);
+                        }
+                    }
+                    CandleSeries series = await(candleService.getCandles(tradingPair, granularity, start, end));
+                    if (series.isEmpty()) {
+                        return error(404, String.format("No candles for %s in the requested range.", tradingPair));
+                    }
+                    return json(200, WhatIfCalculator.calculate(tradingPair, amount, series, points));
+                } catch (CoinbaseUpstreamException e) {
+                    log.error("Failed to fetch candles for what-if: {} - {}", e.getStatusCode(), e.getResponseBody());
+                    return upstreamError(e, String.format("Failed to fetch candles: %d - %s", e.getStatusCode(), e.getResponseBody()));
                 }
             } else {
-                return json(400, error("Unsupported proxy request type"));
+                return rawJson(400, UNSUPPORTED_REQUEST);
             }
         } catch (Exception e) {
             log.error("Unhandled error in proxy lambda", e);
-            return json(500, error("Internal server error: " + e.getMessage()));
+            return error(500, "Internal server error: " + e.getMessage());
         }
     }
 }
-
@@ -12,16 +12,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.dagger.ServiceComponent;
 import org.dto.CreatePaymentInput;
 import org.dto.PaymentLink;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
 import org.service.CoinbaseApiException;
+import org.service.CoinbaseCircuitOpenException;
+import org.service.CoinbaseRateLimitedException;
 import org.service.CoinbaseService;
+import org.startup.StartupPrimer;
 import org.util.DaggerComponentUtil;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
 public class CoinbaseMerchantPayments implements
-        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, ApiHandler {
 
     @NonNull
     private final CoinbaseService coinbaseService;
@@ -29,72 +33,89 @@ public class CoinbaseMerchantPayments implements
     @NonNull
     private final ObjectMapper objectMapper;
 
-    private static final String ALLOWED_ORIGIN = System.getenv("ALLOWED_ORIGIN") != null && !System.getenv("ALLOWED_ORIGIN").isBlank()
-            ? System.getenv("ALLOWED_ORIGIN")
-            : "http://localhost:3000";
+    @NonNull
+    private final ResponseWriter responses;
+
+    @NonNull
+    private final StageMetrics metrics;
+
+    private static final String DEFAULT_ALLOWED_ORIGIN = "http://localhost:3000";
+
+    private static final String BAD_REQUEST = ResponseWriter.errorBody("Bad Request");
+    private static final String METHOD_NOT_ALLOWED = ResponseWriter.errorBody("Method Not Allowed");
+    private static final String INVALID_BODY = ResponseWriter.errorBody("Invalid request body");
+    private static final String RATE_LIMITED = ResponseWriter.errorBody("Too many payment requests, please retry shortly");
+    private static final String UNAVAILABLE = ResponseWriter.errorBody("Payments are temporarily unavailable, please retry shortly");
 
     public CoinbaseMerchantPayments() {
-        this(DaggerComponentUtil.create());
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.COMMERCE));
     }
 
-    private CoinbaseMerchantPayments(final ServiceComponent serviceComponent) {
+    CoinbaseMerchantPayments(final ServiceComponent serviceComponent) {
         this.coinbaseService = serviceComponent.getCoinbaseService();
         this.objectMapper = serviceComponent.getObjectMapper();
+        String allowedOrigin = serviceComponent.getEnvironment().get("ALLOWED_ORIGIN", DEFAULT_ALLOWED_ORIGIN);
+        Map<String, String> headers = ResponseWriter.corsHeaders(allowedOrigin, "Content-Type,Authorization");
+        this.responses = new ResponseWriter(objectMapper, headers);
+        this.metrics = serviceComponent.getStageMetrics();
     }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return handleEvent(request, metrics);
+    }
+
+    @Override
+    public ApiResponse handle(ApiRequest request) {
         try {
-            if (request == null || request.getHttpMethod() == null) {
-                return json(400, error("Bad Request"));
+            if (request.getHttpMethod() == null) {
+                return rawJson(400, BAD_REQUEST);
             }
             if (!"POST".equalsIgnoreCase(request.getHttpMethod())) {
-                return json(405, error("Method Not Allowed"));
+                return rawJson(405, METHOD_NOT_ALLOWED);
             }
 
             CreatePaymentInput input = parseInput(request.getBody());
             if (input == null) {
-                return json(400, error("Invalid request body"));
+                return rawJson(400, INVALID_BODY);
             }
             log.info("Create charge: amount={} desc={} email={}", input.getAmount(), input.getDescription(), input.getCustomerEmail());
 
             PaymentLink link = coinbaseService.createCharge(input);
             log.info("What is the payment link {}", link);
             return json(200, link);
+        } catch (CoinbaseRateLimitedException e) {
+            log.warn("Charge creation rate limited, retry after {} s", e.getRetryAfterSeconds());
+            return ResponseWriter.retryAfter(rawJson(429, RATE_LIMITED), e.getRetryAfterSeconds());
+        } catch (CoinbaseCircuitOpenException e) {
+            log.warn("Coinbase Commerce unavailable, retry after {} s", e.getRetryAfterSeconds());
+            return ResponseWriter.retryAfter(rawJson(503, UNAVAILABLE), e.getRetryAfterSeconds());
         } catch (CoinbaseApiException e) {
             log.error("Coinbase API error: {}", e.getMessage());
-            return json(502, error(e.getMessage()));
+            return error(502, e.getMessage());
         } catch (Exception e) {
             log.error("Unhandled error", e);
-            return json(500, error("Internal error: " + e.getMessage()));
+            return error(500, "Internal error: " + e.getMessage());
         }
     }
 
     private CreatePaymentInput parseInput(String body) throws JsonProcessingException {
         if (body == null || body.isBlank()) return null;
-        return objectMapper.readValue(body, CreatePaymentInput.class);
+        long start = metrics.start();
+        CreatePaymentInput input = objectMapper.readValue(body, CreatePaymentInput.class);
+        metrics.record(Stage.REQUEST_PARSE, start);
+        return input;
     }
 
-    private APIGatewayProxyResponseEvent json(int status, Object payload) {
-        APIGatewayProxyResponseEvent res = new APIGatewayProxyResponseEvent();
-        res.setStatusCode(status);
-        try {
-            res.setBody(objectMapper.writeValueAsString(payload));
-        } catch (JsonProcessingException e) {
-            res.setBody("{\"error\":\"Serialization error\"}");
-        }
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Access-Control-Allow-Origin", ALLOWED_ORIGIN);
-        headers.put("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        headers.put("Access-Control-Allow-Methods", "OPTIONS,GET,POST");
-        res.setHeaders(headers);
-        return res;
+    private ApiResponse json(int status, Object payload) {
+        return responses.json(status, payload);
+    }
+
+    private ApiResponse rawJson(int status, String body) {
+        return responses.rawJson(status, body);
     }
 
-    private Map<String, String> error(String message) {
-        Map<String, String> err = new HashMap<>();
-        err.put("error", message);
-        return err;
+    private ApiResponse error(int status, String message) {
+        return responses.error(status, message);
     }
 }
\ No newline at end of file
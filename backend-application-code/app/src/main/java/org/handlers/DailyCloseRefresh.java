@@ -0,0 +1,27 @@
+package org.handlers;
+
+import org.dagger.ServiceComponent;
+import org.service.DailyCloseIndexService;
+
+/**
+ * Extends the daily close indexes with newly closed days, answering with the last indexed day per pair. Run by
+ * the scheduled rule; {@link Router} never dispatches an API Gateway request here.
+ */
+class DailyCloseRefresh implements ApiHandler {
+
+    static final String ROUTE = "/tasks/refresh-daily-closes";
+
+    private final ResponseWriter responses;
+    private final DailyCloseIndexService dailyCloseIndexService;
+
+    DailyCloseRefresh(final ServiceComponent serviceComponent) {
+        this.responses = new ResponseWriter(serviceComponent.getObjectMapper(), ResponseWriter.JSON_HEADERS);
+        this.dailyCloseIndexService = serviceComponent.getDailyCloseIndexService();
+    }
+
+    @Override
+    public ApiResponse handle(ApiRequest request) {
+        // Pairs that fail to refresh are logged and left out rather than failing the whole run
+        return responses.json(200, dailyCloseIndexService.refreshAll().join());
+    }
+}
@@ -0,0 +1,184 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds and writes a handler's JSON responses. The header set is fixed when the writer is created, payloads
+ * go through an {@link ObjectWriter} cached per payload type, and error bodies are either pre-serialized
+ * constants ({@link #errorBody}) or a small bean rather than a map. Binary bodies are there for clients that
+ * negotiate them; compression is left to API Gateway.
+ */
+@Slf4j
+public final class ResponseWriter {
+
+    public static final Map<String, String> JSON_HEADERS = Map.of("Content-Type", "application/json");
+    // For proxy events that can't be read at all
+    static final String BAD_REQUEST = errorBody("Bad Request");
+
+    private static final String SERIALIZATION_ERROR = errorBody("Serialization error");
+    private static final byte[] SERIALIZATION_ERROR_BYTES = SERIALIZATION_ERROR.getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    // Payloads are serialized here before being escaped into the envelope's body field
+    private static final ThreadLocal<PayloadBuffer> BUFFERS = ThreadLocal.withInitial(PayloadBuffer::new);
+
+    private final JsonFactory jsonFactory;
+    private final Map<String, String> headers;
+    private final ClassValue<ObjectWriter> writers;
+
+    public ResponseWriter(ObjectMapper objectMapper, Map<String, String> headers) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.headers = headers;
+        this.writers = new ClassValue<>() {
+            @Override
+            protected ObjectWriter computeValue(Class<?> type) {
+                return objectMapper.writerFor(type);
+            }
+        };
+    }
+
+    /**
+     * JSON content type plus CORS headers for {@code allowOrigin}; {@code allowHeaders} may be null.
+     */
+    public static Map<String, String> corsHeaders(String allowOrigin, String allowHeaders) {
+        Map<String, String> headers = new LinkedHashMap<>(JSON_HEADERS);
+        headers.put("Access-Control-Allow-Origin", allowOrigin);
+        if (allowHeaders != null) {
+            headers.put("Access-Control-Allow-Headers", allowHeaders);
+        }
+        headers.put("Access-Control-Allow-Methods", "OPTIONS,GET,POST");
+        return Map.copyOf(headers);
+    }
+
+    /**
+     * {@code {"error":message}}, for messages that never change; pass the result to {@link #rawJson}.
+     */
+    public static String errorBody(String message) {
+        return "{\"error\":\"" + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"}";
+    }
+
+    public ApiResponse json(int status, Object payload) {
+        return new ApiResponse(this, status, null, payload);
+    }
+
+    public ApiResponse rawJson(int status, String body) {
+        return new ApiResponse(this, status, body, null);
+    }
+
+    public ApiResponse error(int status, String message) {
+        return json(status, new ErrorBody(message));
+    }
+
+    public ApiResponse binary(int status, byte[] body, String contentType) {
+        Map<String, String> binaryHeaders = new LinkedHashMap<>(headers);
+        binaryHeaders.put("Content-Type", contentType);
+        return new ApiResponse(this, status, body, Map.copyOf(binaryHeaders));
+    }
+
+    /**
+     * {@code response} with {@code Retry-After}, and cacheable for as long, so clients and caches in front of the
+     * API hold off instead of retrying straight into the limit.
+     */
+    public static ApiResponse retryAfter(ApiResponse response, long seconds) {
+        return response.withHeaders(Map.of("Retry-After", Long.toString(seconds), "Cache-Control", "max-age=" + seconds));
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    APIGatewayProxyResponseEvent toEvent(ApiResponse response) {
+        APIGatewayProxyResponseEvent res = new APIGatewayProxyResponseEvent();
+        res.setStatusCode(response.getStatusCode());
+        if (response.getBinaryBody() != null) {
+            res.setBody(Base64.getEncoder().encodeToString(response.getBinaryBody()));
+            res.setIsBase64Encoded(true);
+        } else if (response.getRawBody() != null) {
+            res.setBody(response.getRawBody());
+        } else {
+            try {
+                res.setBody(writer(response.getPayload()).writeValueAsString(response.getPayload()));
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialize response", e);
+                res.setBody(SERIALIZATION_ERROR);
+            }
+        }
+        res.setHeaders(response.getHeaders());
+        return res;
+    }
+
+    void writeTo(ApiResponse response, OutputStream output) throws IOException {
+        PayloadBuffer buffer = null;
+        if (response.getRawBody() == null && response.getBinaryBody() == null) {
+            buffer = BUFFERS.get();
+            buffer.reset();
+            try {
+                writer(response.getPayload()).writeValue(buffer, response.getPayload());
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialize response", e);
+                buffer.reset();
+                buffer.write(SERIALIZATION_ERROR_BYTES);
+            }
+        }
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeNumberField("statusCode", response.getStatusCode());
+            generator.writeObjectFieldStart("headers");
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                generator.writeStringField(header.getKey(), header.getValue());
+            }
+            generator.writeEndObject();
+            if (response.getBinaryBody() != null) {
+                generator.writeBooleanField("isBase64Encoded", true);
+            }
+            generator.writeFieldName("body");
+            if (response.getBinaryBody() != null) {
+                generator.writeBinary(response.getBinaryBody());
+            } else if (buffer != null) {
+                generator.writeUTF8String(buffer.bytes(), 0, buffer.size());
+            } else {
+                generator.writeString(response.getRawBody());
+            }
+            generator.writeEndObject();
+        } finally {
+            if (buffer != null && buffer.bytes().length > MAX_RETAINED_BUFFER) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    private ObjectWriter writer(Object payload) {
+        return writers.get(payload == null ? Object.class : payload.getClass());
+    }
+
+    private static final class PayloadBuffer extends ByteArrayOutputStream {
+        private PayloadBuffer() {
+            super(8 * 1024);
+        }
+
+        private byte[] bytes() {
+            return buf;
+        }
+    }
+
+    @Value
+    private static class ErrorBody {
+        String error;
+    }
+}
@@ -0,0 +1,64 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.dagger.ServiceComponent;
+import org.metrics.StageMetrics;
+import org.startup.StartupPrimer;
+import org.util.DaggerComponentUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single entry point for every API route. All handlers are built over one {@link ServiceComponent}, so a
+ * container serving both charges and exchange traffic keeps one HttpClient, ObjectMapper and set of credentials
+ * warm. New routes are added to {@link #routes}.
+ * <p>
+ * {@link #tasks} are scheduled jobs rather than API routes. They are only dispatched for invocations that didn't
+ * come through API Gateway, so no client can trigger them.
+ */
+@Slf4j
+public class Router implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, ApiHandler {
+
+    private static final String NOT_FOUND = ResponseWriter.errorBody("Not Found");
+
+    private final ResponseWriter responses;
+    private final StageMetrics metrics;
+    private final Map<String, ApiHandler> routes = new HashMap<>();
+    private final Map<String, ApiHandler> tasks = new HashMap<>();
+
+    public Router() {
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.COMMERCE, StartupPrimer.Client.EXCHANGE));
+    }
+
+    public Router(final ServiceComponent serviceComponent) {
+        this.responses = new ResponseWriter(serviceComponent.getObjectMapper(), ResponseWriter.JSON_HEADERS);
+        this.metrics = serviceComponent.getStageMetrics();
+        routes.put("/charges", new CoinbaseMerchantPayments(serviceComponent));
+        routes.put("/coinbase-proxy", new CoinbaseExchangeProxy(serviceComponent));
+        tasks.put(DailyCloseRefresh.ROUTE, new DailyCloseRefresh(serviceComponent));
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return handleEvent(request, metrics);
+    }
+
+    @Override
+    public ApiResponse handle(ApiRequest request) {
+        String route = request.route();
+        ApiHandler handler = route == null ? null : routes.get(route);
+        if (handler == null && route != null && !request.isFromGateway()) {
+            handler = tasks.get(route);
+        }
+        if (handler == null) {
+            log.warn("No route for {}", route);
+            return responses.rawJson(404, NOT_FOUND);
+        }
+        return handler.handle(request);
+    }
+}
@@ -0,0 +1,19 @@
+package org.handlers;
+
+import org.dagger.ServiceComponent;
+import org.startup.StartupPrimer;
+import org.util.DaggerComponentUtil;
+
+/**
+ * Streaming entry point for {@link CoinbaseExchangeProxy}.
+ */
+public class StreamingCoinbaseExchangeProxy extends ApiStreamHandler {
+
+    public StreamingCoinbaseExchangeProxy() {
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.EXCHANGE));
+    }
+
+    private StreamingCoinbaseExchangeProxy(final ServiceComponent serviceComponent) {
+        super(new CoinbaseExchangeProxy(serviceComponent), serviceComponent);
+    }
+}
@@ -0,0 +1,19 @@
+package org.handlers;
+
+import org.dagger.ServiceComponent;
+import org.startup.StartupPrimer;
+import org.util.DaggerComponentUtil;
+
+/**
+ * Streaming entry point for {@link CoinbaseMerchantPayments}.
+ */
+public class StreamingCoinbaseMerchantPayments extends ApiStreamHandler {
+
+    public StreamingCoinbaseMerchantPayments() {
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.COMMERCE));
+    }
+
+    private StreamingCoinbaseMerchantPayments(final ServiceComponent serviceComponent) {
+        super(new CoinbaseMerchantPayments(serviceComponent), serviceComponent);
+    }
+}
@@ -0,0 +1,19 @@
+package org.handlers;
+
+import org.dagger.ServiceComponent;
+import org.startup.StartupPrimer;
+import org.util.DaggerComponentUtil;
+
+/**
+ * Streaming entry point for {@link Router}, serving every route.
+ */
+public class StreamingRouter extends ApiStreamHandler {
+
+    public StreamingRouter() {
+        this(StartupPrimer.install(DaggerComponentUtil.create(), StartupPrimer.Client.COMMERCE, StartupPrimer.Client.EXCHANGE));
+    }
+
+    private StreamingRouter(final ServiceComponent serviceComponent) {
+        super(new Router(serviceComponent), serviceComponent);
+    }
+}
@@ -0,0 +1,26 @@
+package org.metrics;
+
+/**
+ * The parts of a request timed by {@link StageMetrics}. Stages other than {@link #TOTAL} may run several times in
+ * one invocation (a candle range is fetched in windows), in which case their times are summed.
+ */
+public enum Stage {
+    TOTAL("Total"),
+    REQUEST_PARSE("RequestParse"),
+    SECRET("Secret"),
+    SIGN("Sign"),
+    BUILD_UPSTREAM_REQUEST("BuildUpstreamRequest"),
+    UPSTREAM("Upstream"),
+    UPSTREAM_PARSE("UpstreamParse"),
+    RESPONSE_SERIALIZE("ResponseSerialize");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,215 @@
+package org.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times request stages into per-stage {@link LatencyHistogram}s, kept apart for the container's first (cold)
+ * invocation and the warm ones after it. In {@link Mode#EMF} each invocation also writes one CloudWatch Embedded
+ * Metric Format line with the time it spent in each stage, dimensioned by route and cold/warm start.
+ *
+ * <p>Stages are timed with {@link #start()} and {@link #record(Stage, long)}. When {@link Mode#OFF} neither reads
+ * the clock, and {@link #begin()} returns null, so the instrumented paths cost a field read and a branch.
+ *
+ * <p>Per-invocation times are the change in the stage totals between {@link #begin()} and {@link #finish}, which
+ * is exact while the container runs one invocation at a time, as Lambda does. Under concurrent load (the local
+ * harnesses) only the histograms are meaningful.
+ */
+@Slf4j
+public final class StageMetrics {
+
+    public enum Mode { OFF, HISTOGRAM, EMF }
+
+    private static final Logger EMF = LoggerFactory.getLogger("org.metrics.emf");
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Mode mode;
+    private final boolean enabled;
+    private final String namespace;
+    private final LatencyHistogram[] cold = histograms();
+    private final LatencyHistogram[] warm = histograms();
+    private final AtomicLongArray totalNanos = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray counts = new AtomicLongArray(STAGES.length);
+    private final AtomicBoolean firstInvocation = new AtomicBoolean(true);
+    private volatile boolean warmedUp;
+
+    public StageMetrics(Mode mode, String namespace) {
+        this.mode = mode;
+        this.enabled = mode != Mode.OFF;
+        this.namespace = namespace;
+    }
+
+    public static StageMetrics disabled() {
+        return new StageMetrics(Mode.OFF, "");
+    }
+
+    /**
+     * {@code off}, {@code histogram} or {@code emf}, case-insensitive; anything else is off.
+     */
+    public static Mode parseMode(String mode) {
+        try {
+            return mode == null || mode.isBlank() ? Mode.OFF : Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown stage metrics mode {}, metrics are off", mode);
+            return Mode.OFF;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The start of a stage, for {@link #record(Stage, long)}.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(Stage stage, long start) {
+        if (enabled) {
+            recordNanos(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordNanos(Stage stage, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        (warmedUp ? warm : cold)[stage.ordinal()].recordNanos(nanos);
+        totalNanos.addAndGet(stage.ordinal(), nanos);
+        counts.incrementAndGet(stage.ordinal());
+    }
+
+    /**
+     * Starts timing an invocation; pass the result to {@link #finish}. Null when metrics are off.
+     */
+    public Invocation begin() {
+        if (!enabled) {
+            return null;
+        }
+        long[] totals = new long[STAGES.length];
+        long[] started = new long[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++) {
+            totals[i] = totalNanos.get(i);
+            started[i] = counts.get(i);
+        }
+        return new Invocation(firstInvocation.getAndSet(false), System.nanoTime(), totals, started);
+    }
+
+    public void finish(Invocation invocation, String route, int statusCode) {
+        if (invocation == null) {
+            return;
+        }
+        recordNanos(Stage.TOTAL, System.nanoTime() - invocation.startNanos);
+        if (invocation.cold) {
+            warmedUp = true;
+        }
+        if (mode == Mode.EMF) {
+            EMF.info(emfLine(invocation, route, statusCode));
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage, boolean coldStart) {
+        return (coldStart ? cold : warm)[stage.ordinal()];
+    }
+
+    /**
+     * One line per stage with recorded times: count, mean, p50, p99, p999 and max, for warm invocations.
+     */
+    public String describe() {
+        StringBuilder out = new StringBuilder();
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = warm[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "%-22s n=%-7d mean=%8.3f p50=%8.3f p99=%8.3f p999=%8.3f max=%8.3f ms%n",
+                    stage.getMetricName(), histogram.getCount(), histogram.getMeanMillis(),
+                    histogram.getPercentileMillis(0.50), histogram.getPercentileMillis(0.99),
+                    histogram.getPercentileMillis(0.999), histogram.getMaxMillis()));
+        }
+        return out.toString();
+    }
+
+    private String emfLine(Invocation invocation, String route, int statusCode) {
+        StringWriter line = new StringWriter(512);
+        try (JsonGenerator json = JSON.createGenerator(line)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("_aws");
+            json.writeNumberField("Timestamp", System.currentTimeMillis());
+            json.writeArrayFieldStart("CloudWatchMetrics");
+            json.writeStartObject();
+            json.writeStringField("Namespace", namespace);
+            json.writeArrayFieldStart("Dimensions");
+            json.writeStartArray();
+            json.writeString("Route");
+            json.writeString("Start");
+            json.writeEndArray();
+            json.writeEndArray();
+            json.writeArrayFieldStart("Metrics");
+            for (int i = 0; i < STAGES.length; i++) {
+                if (counts.get(i) > invocation.counts[i]) {
+                    json.writeStartObject();
+                    json.writeStringField("Name", STAGES[i].getMetricName());
+                    json.writeStringField("Unit", "Milliseconds");
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+
+            json.writeStringField("Route", route != null ? route : "unknown");
+            json.writeStringField("Start", invocation.cold ? "cold" : "warm");
+            json.writeNumberField("StatusCode", statusCode);
+            for (int i = 0; i < STAGES.length; i++) {
+                long calls = counts.get(i) - invocation.counts[i];
+                if (calls > 0) {
+                    json.writeNumberField(STAGES[i].getMetricName(), (totalNanos.get(i) - invocation.totalNanos[i]) / 1e6);
+                    if (calls > 1) {
+                        json.writeNumberField(STAGES[i].getMetricName() + "Calls", calls);
+                    }
+                }
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            // StringWriter doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return line.toString();
+    }
+
+    private static LatencyHistogram[] histograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    public static final class Invocation {
+        private final boolean cold;
+        private final long startNanos;
+        private final long[] totalNanos;
+        private final long[] counts;
+
+        private Invocation(boolean cold, long startNanos, long[] totalNanos, long[] counts) {
+            this.cold = cold;
+            this.startNanos = startNanos;
+            this.totalNanos = totalNanos;
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Runs a fixed number of asynchronous tasks with at most {@code maxConcurrency} in flight, starting the next
+ * task as each one completes.
+ */
+final class BoundedLauncher {
+
+    private BoundedLauncher() {
+    }
+
+    /**
+     * Completes with every task's result in task order, or fails fast with the first task error, after which no
+     * further tasks are started.
+     */
+    static <T> CompletableFuture<List<T>> launchAll(int count, int maxConcurrency, IntFunction<CompletableFuture<T>> task) {
+        CompletableFuture<List<T>> done = new CompletableFuture<>();
+        if (count == 0) {
+            done.complete(List.of());
+            return done;
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] results = (T[]) new Object[count];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(count);
+        AtomicBoolean failed = new AtomicBoolean();
+
+        Runnable launchNext = new Runnable() {
+            @Override
+            public void run() {
+                int index = next.getAndIncrement();
+                if (index >= count || failed.get()) {
+                    return;
+                }
+                CompletableFuture<T> future;
+                try {
+                    future = task.apply(index);
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                future.whenComplete((result, error) -> {
+                    if (error != null) {
+                        if (failed.compareAndSet(false, true)) {
+                            done.completeExceptionally(error);
+                        }
+                        return;
+                    }
+                    results[index] = result;
+                    if (remaining.decrementAndGet() == 0) {
+                        done.complete(Arrays.asList(results));
+                    } else {
+                        run();
+                    }
+                });
+            }
+        };
+
+        for (int i = 0; i < Math.min(maxConcurrency, count); i++) {
+            launchNext.run();
+        }
+        return done;
+    }
+}
@@ -0,0 +1,60 @@
+package org.service;
+
+import lombok.Value;
+import org.candles.CandleResampler;
+import org.candles.CandleSeries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Splits an arbitrary candle range into upstream-sized windows and fetches them with bounded parallelism.
+ * <p>
+ * Windows are aligned to a fixed grid of {@link #MAX_CANDLES_PER_REQUEST} candles so that overlapping ranges
+ * requested by different users resolve to the same windows (and therefore the same cache entries).
+ */
+public class CandleBackfill {
+
+    public static final int MAX_CANDLES_PER_REQUEST = 300;
+    public static final int MAX_CANDLES_PER_RANGE = 100_000;
+
+    private final int maxConcurrency;
+
+    public CandleBackfill(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Grid-aligned windows covering [start, end]; each window's bounds are the start times of its first and
+     * last candle.
+     */
+    public static List<Window> windows(long start, long end, int granularity) {
+        long span = (long) MAX_CANDLES_PER_REQUEST * granularity;
+        long firstWindowStart = start - Math.floorMod(start - CandleResampler.origin(granularity), span);
+        List<Window> windows = new ArrayList<>();
+        for (long windowStart = firstWindowStart; windowStart <= end; windowStart += span) {
+            windows.add(new Window(windowStart, windowStart + span - granularity));
+        }
+        return windows;
+    }
+
+    /**
+     * Fetches every window, keeping at most {@code maxConcurrency} in flight, and merges the results into one
+     * series with duplicate timestamps removed. Fails fast with the first window error.
+     */
+    public CompletableFuture<CandleSeries> fetchAll(List<Window> windows, Function<Window, CompletableFuture<CandleSeries>> fetcher) {
+        return BoundedLauncher.launchAll(windows.size(), maxConcurrency, index -> fetcher.apply(windows.get(index)))
+                .thenApply(CandleSeries::merge);
+    }
+
+    @Value
+    public static class Window {
+        long start;
+        long end;
+    }
+}
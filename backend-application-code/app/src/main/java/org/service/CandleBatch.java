@@ -0,0 +1,114 @@
+package org.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleResampler;
+import org.candles.CandleSeries;
+import org.dto.coinbaseexchange.CandlesBatchEntry;
+import org.dto.coinbaseexchange.CandlesBatchRequest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves several candle requests in one call, at most {@code maxConcurrency} at a time. Every item gets its own
+ * keyed entry; a failing item is reported in its entry and never fails the batch. Pairs are checked against the
+ * {@link ProductCatalog} first, and entries stay keyed by the pair as the client sent it.
+ */
+@Slf4j
+public class CandleBatch {
+
+    public static final int MAX_ITEMS = 25;
+    public static final String PAIR_AND_GRANULARITY_REQUIRED =
+            "tradingPair and a granularity that is a positive multiple of 60 are required.";
+
+    private final CandleService candleService;
+    private final ProductCatalog productCatalog;
+    private final int maxConcurrency;
+    private final LongSupplier clock;
+
+    public CandleBatch(CandleService candleService, ProductCatalog productCatalog, int maxConcurrency) {
+        this(candleService, productCatalog, maxConcurrency, System::currentTimeMillis);
+    }
+
+    public CandleBatch(CandleService candleService, ProductCatalog productCatalog, int maxConcurrency, LongSupplier clock) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.candleService = candleService;
+        this.productCatalog = productCatalog;
+        this.maxConcurrency = maxConcurrency;
+        this.clock = clock;
+    }
+
+    /**
+     * Entry key for an item: {@code "<pair>:<granularity>"}, followed by {@code ":<start>"} or
+     * {@code ":<start>-<end>"} for ranges.
+     */
+    public static String key(CandlesBatchRequest.Item item) {
+        String key = item.getTradingPair() + ":" + item.getGranularity();
+        if (item.getStart() != null) {
+            key += ":" + item.getStart() + (item.getEnd() != null ? "-" + item.getEnd() : "");
+        }
+        return key;
+    }
+
+    /**
+     * Entries keyed by {@link #key}, in request order. Never completes exceptionally.
+     */
+    public CompletableFuture<Map<String, CandlesBatchEntry>> fetch(List<CandlesBatchRequest.Item> items) {
+        return BoundedLauncher.launchAll(items.size(), maxConcurrency, index -> {
+            CandlesBatchRequest.Item item = items.get(index);
+            return fetchOne(item).handle((entry, error) -> error == null ? entry : failure(item, error));
+        }).thenApply(entries -> {
+            Map<String, CandlesBatchEntry> keyed = new LinkedHashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                keyed.put(key(items.get(i)), entries.get(i));
+            }
+            return keyed;
+        });
+    }
+
+    private CompletableFuture<CandlesBatchEntry> fetchOne(CandlesBatchRequest.Item item) {
+        int granularity = item.getGranularity();
+        int source = CandleResampler.sourceGranularity(granularity);
+        if (item.getTradingPair() == null || item.getTradingPair().isBlank() || source < 0) {
+            return CompletableFuture.completedFuture(CandlesBatchEntry.failed(400, PAIR_AND_GRANULARITY_REQUIRED));
+        }
+        try {
+            String tradingPair = productCatalog.normalize(item.getTradingPair());
+            if (tradingPair == null) {
+                return CompletableFuture.completedFuture(CandlesBatchEntry.failed(400, "Unknown tradingPair."));
+            }
+            if (item.getStart() == null) {
+                return candleService.getLatestCandles(tradingPair, granularity).thenApply(CandlesBatchEntry::ok);
+            }
+            long start = item.getStart();
+            long end = item.getEnd() != null ? item.getEnd() : clock.getAsLong() / 1000;
+            if (end < start) {
+                return CompletableFuture.completedFuture(CandlesBatchEntry.failed(400, "end must not be before start."));
+            }
+            if ((end - start) / source > CandleBackfill.MAX_CANDLES_PER_RANGE) {
+                return CompletableFuture.completedFuture(CandlesBatchEntry.failed(400,
+                        String.format("Requested range exceeds %d candles.", CandleBackfill.MAX_CANDLES_PER_RANGE)));
+            }
+            return candleService.getCandles(tradingPair, granularity, start, end).thenApply(CandlesBatchEntry::ok);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static CandlesBatchEntry failure(CandlesBatchRequest.Item item, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CoinbaseUpstreamException) {
+            CoinbaseUpstreamException upstream = (CoinbaseUpstreamException) cause;
+            return CandlesBatchEntry.failed(upstream.getStatusCode(),
+                    String.format("Failed to fetch candles: %d - %s", upstream.getStatusCode(), upstream.getResponseBody()));
+        }
+        log.error("Failed to fetch candles for batch item {}", key(item), cause);
+        return CandlesBatchEntry.failed(500, "Failed to fetch candles: " + cause.getMessage());
+    }
+}
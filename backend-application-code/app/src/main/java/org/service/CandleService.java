@@ -0,0 +1,356 @@
+package org.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.archive.CandleArchive;
+import org.archive.CandleRecords;
+import org.cache.CandleCache;
+import org.cache.SingleFlight;
+import org.candles.CandleResampler;
+import org.candles.CandleSeries;
+import org.candles.RawCandles;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves candles from the in-memory cache, then the optional on-disk archive, falling back to the upstream one
+ * window at a time. Concurrent requests for the same window share a single upstream call, and windows fetched
+ * from upstream are appended to the archive once their candles have settled (see {@link CandleCache#settleMillis}).
+ * Until then they are only held in the cache with a short TTL.
+ * <p>
+ * Granularities the upstream doesn't serve (4h, 1w, ...) are resampled from the coarsest native granularity
+ * that divides them, and a native window is derived from finer windows instead of fetched when those are
+ * already held locally.
+ * <p>
+ * The latest window is also available as {@link RawCandles}: the upstream body is kept as-is after a structural
+ * check, so plain "latest candles" requests are answered without parsing or re-serializing JSON. When the cached
+ * latest window expires, only the candles from its last unsettled one on are fetched again and merged onto the
+ * settled candles already held. While the upstream is failing (see {@link CircuitBreaker#isUpstreamFailure}) those
+ * requests get the last latest window fetched for the pair instead of an error.
+ */
+@Slf4j
+public class CandleService {
+
+    /**
+     * Deriving a native window from a finer one is only tried when it needs at most this many finer windows.
+     */
+    private static final int MAX_DERIVE_RATIO = 24;
+    private static final int MAX_LAST_LATEST = 64;
+
+    private final CandleCache<CandleSeries> cache;
+    private final CandleCache<RawCandles> latestJsonCache;
+    private final CandleArchive archive;
+    private final CandleBackfill backfill;
+    private final CandleUpstream upstream;
+    private final ObjectMapper objectMapper;
+    private final StageMetrics metrics;
+    private final LongSupplier clock;
+    private final SingleFlight<WindowKey, CandleSeries> flights = new SingleFlight<>();
+    private final SingleFlight<WindowKey, RawCandles> latestJsonFlights = new SingleFlight<>();
+    // Last latest window per pair and granularity, kept past its bucket so its closed candles can be reused on the
+    // next refresh and the whole window served while Coinbase is down
+    private final Map<String, RawCandles> lastLatest = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RawCandles> eldest) {
+            return size() > MAX_LAST_LATEST;
+        }
+    });
+    private final LongAdder tailRefreshes = new LongAdder();
+
+    public CandleService(CandleCache<CandleSeries> cache, CandleCache<RawCandles> latestJsonCache, CandleArchive archive,
+                         CandleBackfill backfill, CandleUpstream upstream, ObjectMapper objectMapper, StageMetrics metrics) {
+        this(cache, latestJsonCache, archive, backfill, upstream, objectMapper, metrics, System::currentTimeMillis);
+    }
+
+    public CandleService(CandleCache<CandleSeries> cache, CandleCache<RawCandles> latestJsonCache, CandleArchive archive,
+                         CandleBackfill backfill, CandleUpstream upstream, ObjectMapper objectMapper, StageMetrics metrics,
+                         LongSupplier clock) {
+        this.cache = cache;
+        this.latestJsonCache = latestJsonCache;
+        this.archive = archive;
+        this.backfill = backfill;
+        this.upstream = upstream;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    /**
+     * The most recent {@link CandleBackfill#MAX_CANDLES_PER_REQUEST} candles as upstream JSON.
+     */
+    public CompletableFuture<RawCandles> getLatestCandlesJson(String tradingPair, int granularity) {
+        if (!CandleResampler.isNative(granularity)) {
+            return getLatestCandles(tradingPair, granularity).thenApply(series -> new RawCandles(serialize(series), series.size()));
+        }
+        WindowKey key = latestWindow(tradingPair, granularity);
+        RawCandles cached = latestJsonCache.get(tradingPair, granularity, key.getStart(), key.getEnd());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return fetchLatestCandlesJson(key).handle((raw, error) -> {
+            if (error == null) {
+                return raw;
+            }
+            String staleKey = staleKey(tradingPair, granularity);
+            RawCandles stale = CircuitBreaker.isUpstreamFailure(error) ? lastLatest.get(staleKey) : null;
+            if (stale == null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            log.warn("Serving stale latest candles for {} after upstream failure: {}", staleKey, error.getMessage());
+            return stale;
+        });
+    }
+
+    private CompletableFuture<RawCandles> fetchLatestCandlesJson(WindowKey key) {
+        String tradingPair = key.getTradingPair();
+        int granularity = key.getGranularity();
+        return latestJsonFlights.execute(key, () -> {
+            RawCandles previous = lastLatest.get(staleKey(tradingPair, granularity));
+            CompletableFuture<RawCandles> fetched = previous != null
+                    ? refreshTail(key, parse(previous.getJson()))
+                    : fetchWholeLatest(key);
+            return fetched.thenApply(raw -> {
+                latestJsonCache.put(tradingPair, granularity, key.getStart(), key.getEnd(), raw);
+                lastLatest.put(staleKey(tradingPair, granularity), raw);
+                logStats();
+                return raw;
+            });
+        });
+    }
+
+    private CompletableFuture<RawCandles> fetchWholeLatest(WindowKey key) {
+        return upstream.fetchCandlesJson(key.getTradingPair(), key.getGranularity(), null, null)
+                .thenApply(body -> {
+                    long start = metrics.start();
+                    RawCandles raw = RawCandles.check(body);
+                    metrics.record(Stage.UPSTREAM_PARSE, start);
+                    if (raw == null) {
+                        // Unexpected shape: normalize through the full parser (which rejects invalid bodies).
+                        CandleSeries series = parse(body);
+                        raw = new RawCandles(serialize(series), series.size());
+                    }
+                    return raw;
+                });
+    }
+
+    /**
+     * Fetches the candles from the last one in {@code previous}, which may still have been open when it was
+     * fetched, or from the first one that hasn't settled if that is earlier, and merges them onto the candles of
+     * {@code previous} that are still in the window. When the window has moved past all of {@code previous} the
+     * whole window is fetched instead.
+     */
+    private CompletableFuture<RawCandles> refreshTail(WindowKey key, CandleSeries previous) {
+        if (previous.isEmpty() || previous.lastTime() < key.getStart()) {
+            return fetchWholeLatest(key);
+        }
+        tailRefreshes.increment();
+        int granularity = key.getGranularity();
+        long tailStart = previous.lastTime();
+        while (tailStart - granularity >= key.getStart() && !isSettled(granularity, tailStart - granularity)) {
+            tailStart -= granularity;
+        }
+        long from = tailStart;
+        return upstream.fetchCandlesJson(key.getTradingPair(), granularity, from, key.getEnd())
+                .thenApply(body -> {
+                    CandleSeries closed = previous.between(key.getStart(), from - 1);
+                    CandleSeries merged = CandleSeries.merge(List.of(closed, parse(body)));
+                    return new RawCandles(serialize(merged), merged.size());
+                });
+    }
+
+    /**
+     * The most recent {@link CandleBackfill#MAX_CANDLES_PER_REQUEST} candles.
+     */
+    public CompletableFuture<CandleSeries> getLatestCandles(String tradingPair, int granularity) {
+        WindowKey key = latestWindow(tradingPair, granularity);
+        if (!CandleResampler.isNative(granularity)) {
+            return getCandles(tradingPair, granularity, key.getStart(), key.getEnd());
+        }
+        CandleSeries cached = cache.get(tradingPair, granularity, key.getStart(), key.getEnd());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return fetchLatestCandlesJson(key).thenApply(raw -> {
+            CandleSeries series = parse(raw.getJson());
+            cache.put(tradingPair, granularity, key.getStart(), key.getEnd(), series);
+            return series;
+        });
+    }
+
+    /**
+     * Candles starting at or after {@code since} up to the current one. Recent polls are answered from the cached
+     * latest window; older starting points fall back to a range fetch.
+     */
+    public CompletableFuture<CandleSeries> getCandlesSince(String tradingPair, int granularity, long since) {
+        WindowKey key = latestWindow(tradingPair, granularity);
+        if (since >= key.getStart()) {
+            return getLatestCandles(tradingPair, granularity).thenApply(series -> series.between(since, key.getEnd()));
+        }
+        return getCandles(tradingPair, granularity, since, key.getEnd());
+    }
+
+    /**
+     * All candles whose start time falls within [start, end] (epoch seconds).
+     */
+    public CompletableFuture<CandleSeries> getCandles(String tradingPair, int granularity, long start, long end) {
+        if (CandleResampler.sourceGranularity(granularity) < 0) {
+            throw new IllegalArgumentException("Unsupported granularity " + granularity);
+        }
+        long clampedEnd = Math.min(end, CandleCache.currentBucket(clock.getAsLong(), granularity));
+        List<CandleBackfill.Window> windows = CandleBackfill.windows(start, clampedEnd, granularity);
+        return backfill.fetchAll(windows, window -> getWindow(tradingPair, granularity, window.getStart(), window.getEnd()))
+                .thenApply(series -> series.between(start, clampedEnd));
+    }
+
+    private CompletableFuture<CandleSeries> getWindow(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        if (!CandleResampler.isNative(granularity)) {
+            return getResampledWindow(tradingPair, granularity, windowStart, windowEnd);
+        }
+        CandleSeries local = getLocal(tradingPair, granularity, windowStart, windowEnd);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        boolean archivable = archive != null && isSettled(granularity, windowEnd);
+        CandleSeries derived = deriveFromFiner(tradingPair, granularity, windowStart, windowEnd);
+        if (derived != null) {
+            cache.put(tradingPair, granularity, windowStart, windowEnd, derived);
+            if (archivable) {
+                archive.append(tradingPair, granularity, windowStart, windowEnd, derived);
+            }
+            return CompletableFuture.completedFuture(derived);
+        }
+        return flights.execute(new WindowKey(tradingPair, granularity, windowStart, windowEnd), () ->
+                upstream.fetchCandlesJson(tradingPair, granularity, windowStart, windowEnd)
+                        .thenApply(body -> {
+                            CandleSeries series = parse(body);
+                            cache.put(tradingPair, granularity, windowStart, windowEnd, series);
+                            if (archivable) {
+                                archive.append(tradingPair, granularity, windowStart, windowEnd, series);
+                            }
+                            logStats();
+                            return series;
+                        }));
+    }
+
+    /**
+     * A window already held in memory or, once settled, in the archive; null otherwise.
+     */
+    private CandleSeries getLocal(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        CandleSeries cached = cache.get(tradingPair, granularity, windowStart, windowEnd);
+        if (cached != null) {
+            return cached;
+        }
+        if (archive != null && isSettled(granularity, windowEnd)) {
+            CandleRecords archived = archive.read(tradingPair, granularity, windowStart, windowEnd);
+            if (archived != null) {
+                CandleSeries series = archived.toSeries();
+                cache.put(tradingPair, granularity, windowStart, windowEnd, series);
+                return series;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a native window from a finer granularity whose windows are all held locally, so the upstream isn't
+     * asked for candles we can already derive. Returns null when no finer granularity covers the window.
+     */
+    private CandleSeries deriveFromFiner(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        for (int finer : CandleResampler.finerNativeGranularities(granularity)) {
+            if (granularity / finer > MAX_DERIVE_RATIO) {
+                break;
+            }
+            long finerEnd = windowEnd + granularity - finer;
+            List<CandleSeries> parts = new ArrayList<>();
+            for (CandleBackfill.Window window : CandleBackfill.windows(windowStart, finerEnd, finer)) {
+                CandleSeries part = getLocal(tradingPair, finer, window.getStart(), window.getEnd());
+                if (part == null) {
+                    parts = null;
+                    break;
+                }
+                parts.add(part);
+            }
+            if (parts != null) {
+                return CandleResampler.resample(CandleSeries.merge(parts).between(windowStart, finerEnd), granularity);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a window of a granularity the upstream doesn't serve from its coarsest native source.
+     */
+    private CompletableFuture<CandleSeries> getResampledWindow(String tradingPair, int granularity, long windowStart, long windowEnd) {
+        CandleSeries cached = cache.get(tradingPair, granularity, windowStart, windowEnd);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        int source = CandleResampler.sourceGranularity(granularity);
+        return getCandles(tradingPair, source, windowStart, windowEnd + granularity - source).thenApply(fine -> {
+            CandleSeries series = CandleResampler.resample(fine, granularity);
+            cache.put(tradingPair, granularity, windowStart, windowEnd, series);
+            return series;
+        });
+    }
+
+    private static String staleKey(String tradingPair, int granularity) {
+        return tradingPair + ":" + granularity;
+    }
+
+    private WindowKey latestWindow(String tradingPair, int granularity) {
+        long bucket = CandleCache.currentBucket(clock.getAsLong(), granularity);
+        long windowStart = bucket - (long) (CandleBackfill.MAX_CANDLES_PER_REQUEST - 1) * granularity;
+        return new WindowKey(tradingPair, granularity, windowStart, bucket);
+    }
+
+    // Only settled windows are archived: the archive is never checked against the upstream again
+    private boolean isSettled(int granularity, long lastCandleStart) {
+        return CandleCache.isSettled(clock.getAsLong(), granularity, lastCandleStart);
+    }
+
+    private CandleSeries parse(String body) {
+        long start = metrics.start();
+        try {
+            CandleSeries series = objectMapper.readValue(body, CandleSeries.class);
+            metrics.record(Stage.UPSTREAM_PARSE, start);
+            return series;
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private String serialize(CandleSeries series) {
+        try {
+            return objectMapper.writeValueAsString(series);
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void logStats() {
+        log.info("Candle cache {}, latest json cache {}, upstream calls started={} shared={} tail refreshes={}",
+                cache.stats(), latestJsonCache.stats(),
+                flights.getStarted() + latestJsonFlights.getStarted(), flights.getShared() + latestJsonFlights.getShared(),
+                tailRefreshes.sum());
+    }
+
+    @Value
+    private static class WindowKey {
+        String tradingPair;
+        int granularity;
+        long start;
+        long end;
+    }
+}
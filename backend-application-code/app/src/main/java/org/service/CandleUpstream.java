@@ -0,0 +1,13 @@
+package org.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One upstream candle call returning the raw response body. {@code start} and {@code end} are epoch seconds
+ * and are both null for the "latest candles" request. Non-200 responses complete the future with a
+ * {@link CoinbaseUpstreamException}.
+ */
+@FunctionalInterface
+public interface CandleUpstream {
+    CompletableFuture<String> fetchCandlesJson(String tradingPair, int granularity, Long start, Long end);
+}
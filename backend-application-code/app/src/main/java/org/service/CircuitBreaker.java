@@ -0,0 +1,191 @@
+package org.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling a Coinbase API while it is failing. The outcomes of the last {@code window} calls are kept;
+ * once at least half the window has been seen and {@code failureRatio} of it failed, the breaker opens and
+ * calls are refused with a {@link CoinbaseCircuitOpenException} for {@code openMillis}. After that one trial call
+ * is let through (half-open): success closes the breaker, failure opens it again.
+ *
+ * <p>Only signs of a degraded upstream count as failures: 5xx responses and I/O errors including timeouts (see
+ * {@link #isUpstreamFailure}). Other answers, 4xx and 429 included, show the upstream is up.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final boolean[] outcomes;
+    private final double failureRatio;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openUntil;
+    private boolean trialInFlight;
+    private long opened;
+
+    public CircuitBreaker(String name, int window, double failureRatio, long openMillis) {
+        this(name, window, failureRatio, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int window, double failureRatio, long openMillis, LongSupplier nanoClock) {
+        this.name = name;
+        this.outcomes = new boolean[Math.max(2, window)];
+        this.failureRatio = failureRatio;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Whether a call may be sent now. In the half-open state this hands out the single trial call, which must be
+     * followed by {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                log.info("Coinbase {} circuit half-open, sending a trial call", name);
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("Coinbase {} circuit closed", name);
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= outcomes.length / 2 && failures >= failureRatio * recorded) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * A call that never reached the upstream (e.g. shed by the rate limiter): frees the trial slot, changes nothing.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Records how a call sent after {@link #tryAcquire} ended; {@code error} is null on success.
+     */
+    public void onComplete(Throwable error) {
+        if (error == null) {
+            onSuccess();
+        } else if (isUpstreamFailure(error)) {
+            onFailure();
+        } else if (unwrap(error) instanceof CoinbaseRateLimitedException) {
+            // Shed locally or throttled upstream: says nothing about whether Coinbase is healthy
+            onIgnored();
+        } else {
+            onSuccess();
+        }
+    }
+
+    public CoinbaseCircuitOpenException openException() {
+        long retryAfter;
+        synchronized (this) {
+            retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(openUntil - nanoClock.getAsLong() + 999_999_999));
+        }
+        return new CoinbaseCircuitOpenException(
+                String.format("{\"message\":\"Coinbase %s unavailable, retry after %d s\"}", name, retryAfter), retryAfter);
+    }
+
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Whether {@code error} means the upstream is degraded: a 5xx answer, an I/O failure or timeout, or a call
+     * refused by an open breaker.
+     */
+    public static boolean isUpstreamFailure(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof CoinbaseUpstreamException) {
+            return ((CoinbaseUpstreamException) cause).getStatusCode() >= 500;
+        }
+        return cause instanceof IOException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = nanoClock.getAsLong() + openNanos;
+        trialInFlight = false;
+        opened++;
+        log.warn("Coinbase {} circuit open for {} ms after {} failures in {} calls",
+                name, TimeUnit.NANOSECONDS.toMillis(openNanos), failures, recorded);
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        trialInFlight = false;
+    }
+}
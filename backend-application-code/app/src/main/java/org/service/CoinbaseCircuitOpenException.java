@@ -0,0 +1,12 @@
+package org.service;
+
+/**
+ * A Coinbase call refused without being sent because its {@link CircuitBreaker} is open. Reported as a 503 with
+ * the time left until the breaker lets a trial call through.
+ */
+public class CoinbaseCircuitOpenException extends CoinbaseUpstreamException {
+
+    public CoinbaseCircuitOpenException(String responseBody, long retryAfterSeconds) {
+        super(503, responseBody, retryAfterSeconds);
+    }
+}
@@ -1,7 +1,14 @@
 package org.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.cache.SecretCache;
+import org.dagger.SysEnvModule;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
 import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueRequest;
 import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueResponse;
@@ -13,39 +20,74 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Signed, non-blocking client for the Coinbase Exchange REST API. Every call completes with the raw response
+ * body; non-200 responses complete exceptionally with a {@link CoinbaseUpstreamException}.
+ * <p>
+ * Calls are refused up front while the {@link CircuitBreaker} is open, and each request times out after
+ * {@code requestTimeoutMillis}. Idempotent GETs are hedged by the {@link RequestHedger}; orders never are.
+ */
 @Singleton
 @Slf4j
-public class CoinbaseExchangeService {
+public class CoinbaseExchangeService implements CandleUpstream {
+
+    public static final String PUBLIC_RATE_LIMITER = "CoinbasePublicRateLimiter";
+    public static final String PRIVATE_RATE_LIMITER = "CoinbasePrivateRateLimiter";
+    public static final String REQUEST_TIMEOUT_MILLIS = "CoinbaseExchangeRequestTimeoutMillis";
 
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final SecretsManagerClient secretsManagerClient;
+    private final String apiEndpoint;
     private final String coinbaseApiSecretArn;
+    private final StageMetrics metrics;
+    private final UpstreamRateLimiter publicLimiter;
+    private final UpstreamRateLimiter privateLimiter;
+    private final CircuitBreaker breaker;
+    private final RequestHedger hedger;
+    private final Duration requestTimeout;
 
-    private String apiKey;
-    private String apiSecret;
-    private String apiPassphrase;
-
-    private static final String API_ENDPOINT = "https://api-public.sandbox.exchange.coinbase.com";
+    private final SecretCache<Credentials> credentials;
 
     @Inject
     public CoinbaseExchangeService(HttpClient httpClient, ObjectMapper objectMapper, SecretsManagerClient secretsManagerClient,
-                                   @Named("CoinbaseApiSecretArn") String coinbaseApiSecretArn) {
+                                   @Named(SysEnvModule.COINBASE_EXCHANGE_API_URL) String apiEndpoint,
+                                   @Named("CoinbaseApiSecretArn") String coinbaseApiSecretArn,
+                                   @Named("CoinbaseApiSecretRefreshSeconds") long secretRefreshSeconds,
+                                   StageMetrics metrics,
+                                   @Named(PUBLIC_RATE_LIMITER) UpstreamRateLimiter publicLimiter,
+                                   @Named(PRIVATE_RATE_LIMITER) UpstreamRateLimiter privateLimiter,
+                                   CircuitBreaker breaker, RequestHedger hedger,
+                                   @Named(REQUEST_TIMEOUT_MILLIS) long requestTimeoutMillis) {
         this.httpClient = httpClient;
         this.objectMapper = objectMapper;
         this.secretsManagerClient = secretsManagerClient;
+        this.apiEndpoint = apiEndpoint;
         this.coinbaseApiSecretArn = coinbaseApiSecretArn;
+        this.metrics = metrics;
+        this.publicLimiter = publicLimiter;
+        this.privateLimiter = privateLimiter;
+        this.breaker = breaker;
+        this.hedger = hedger;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.credentials = new SecretCache<>(this::loadApiKeys, TimeUnit.SECONDS.toMillis(secretRefreshSeconds),
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "coinbase-secret-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
     }
 
-    private synchronized void loadApiKeys() throws CoinbaseApiException {
-        if (apiKey != null && apiSecret != null && apiPassphrase != null) {
-            return; // Already loaded
+    private Credentials loadApiKeys() throws CoinbaseApiException {
+        if (coinbaseApiSecretArn == null || coinbaseApiSecretArn.isBlank()) {
+            throw new CoinbaseApiException("COINBASE_API_SECRET_ARN environment variable is not set.");
         }
         try {
             GetSecretValueRequest getSecretValueRequest = GetSecretValueRequest.builder()
@@ -53,45 +95,141 @@ public class CoinbaseExchangeService {
                     .build();
             GetSecretValueResponse getSecretValueResponse = secretsManagerClient.getSecretValue(getSecretValueRequest);
 
-            if (getSecretValueResponse.secretString() != null) {
-                // Assuming the secret is stored as a JSON string with apiKey, apiSecret, apiPassphrase fields
-                // This part needs to be adapted based on how the secret is actually stored
-                // For now, let's assume it's a simple JSON string
-                String secretString = getSecretValueResponse.secretString();
-                // Parse the JSON string to extract the keys
-                // This requires a custom DTO or using a Map
-                // For simplicity, let's assume direct parsing for now
-                // In a real app, you'd use Jackson to map it to a DTO
-                // Example: Map<String, String> secretMap = objectMapper.readValue(secretString, new TypeReference<Map<String, String>>() {});
-                // apiKey = secretMap.get("apiKey");
-                // apiSecret = secretMap.get("apiSecret");
-                // apiPassphrase = secretMap.get("apiPassphrase");
-
-                // Placeholder for actual secret parsing
-                // You will need to replace this with actual parsing logic based on your secret structure
-                // For now, let's just log a warning
-                log.warn("Secret parsing not implemented. Please implement actual parsing for Coinbase API keys.");
-                // Example dummy values for compilation
-                apiKey = "DUMMY_API_KEY";
-                apiSecret = "DUMMY_API_SECRET";
-                apiPassphrase = "DUMMY_API_PASSPHRASE";
-
-            } else {
+            if (getSecretValueResponse.secretString() == null) {
                 throw new CoinbaseApiException("Secret string is null.");
             }
+            Map<String, String> secretMap = objectMapper.readValue(getSecretValueResponse.secretString(), new TypeReference<Map<String, String>>() {});
+            return new Credentials(secretMap.get("apiKey"), secretMap.get("apiPassphrase"),
+                    new CoinbaseRequestSigner(secretMap.get("apiSecret")));
+        } catch (CoinbaseApiException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error loading API keys from Secrets Manager", e);
-            throw new CoinbaseApiException("Failed to load API keys: " + e.getMessage());
+            throw new CoinbaseApiException("Failed to load API keys: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads the API keys and builds the signer now rather than on the first request.
+     */
+    public void prime() throws CoinbaseApiException {
+        credentials.get();
+    }
+
+    public String getEndpointHost() {
+        return URI.create(apiEndpoint).getHost();
+    }
+
+    /**
+     * Opens a connection (DNS, TCP and TLS) to the exchange with an unauthenticated request, so the first real
+     * request finds it in the client's pool.
+     */
+    public CompletableFuture<Void> warmConnection() {
+        HttpRequest httpRequest = HttpRequest.newBuilder().uri(URI.create(apiEndpoint + "/time")).GET().build();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding()).thenApply(response -> null);
+    }
+
+    @Override
+    public CompletableFuture<String> fetchCandlesJson(String tradingPair, int granularity, Long start, Long end) {
+        String requestPath = String.format("/products/%s/candles?granularity=%d", tradingPair, granularity);
+        if (start != null && end != null) {
+            requestPath += String.format("&start=%s&end=%s", Instant.ofEpochSecond(start), Instant.ofEpochSecond(end));
+        }
+        return sendHedged(requestPath);
+    }
+
+    /**
+     * Places an order described by Coinbase order fields (side, product_id, type, funds or size).
+     */
+    public CompletableFuture<String> placeOrder(Map<String, String> order) {
+        String body;
+        long start = metrics.start();
+        try {
+            body = objectMapper.writeValueAsString(order);
+            metrics.record(Stage.BUILD_UPSTREAM_REQUEST, start);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new CoinbaseApiException("Invalid order: " + e.getMessage(), e));
         }
+        return send(privateLimiter, "POST", "/orders", body);
     }
 
-    private String createSignature(String timestamp, String method, String requestPath, String body) throws NoSuchAlgorithmException, InvalidKeyException {
-        String message = timestamp + method + requestPath + body;
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secret_key = new SecretKeySpec(Base64.getDecoder().decode(apiSecret), "HmacSHA256");
-        sha256_HMAC.init(secret_key);
-        return Base64.getEncoder().encodeToString(sha256_HMAC.doFinal(message.getBytes()));
+    public CompletableFuture<String> getProducts() {
+        return sendHedged("/products");
     }
 
-    // TODO: Implement getCandles and placeOrder methods
-}
\ No newline at end of file
+    /**
+     * Sends once the breaker and {@code limiter} allow it; the request is signed after any wait so its timestamp
+     * stays fresh.
+     */
+    private CompletableFuture<String> send(UpstreamRateLimiter limiter, String method, String requestPath, String body) {
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(breaker.openException());
+        }
+        return limiter.acquire()
+                .thenCompose(ready -> sendNow(limiter, method, requestPath, body))
+                .whenComplete((response, error) -> breaker.onComplete(error));
+    }
+
+    // The hedge is sent only while the breaker is closed and a rate limit token is free without waiting
+    private CompletableFuture<String> sendHedged(String requestPath) {
+        return hedger.execute(() -> send(publicLimiter, "GET", requestPath, ""), () -> {
+            if (!breaker.isClosed() || !publicLimiter.tryAcquire()) {
+                return null;
+            }
+            return sendNow(publicLimiter, "GET", requestPath, "").whenComplete((response, error) -> breaker.onComplete(error));
+        });
+    }
+
+    private CompletableFuture<String> sendNow(UpstreamRateLimiter limiter, String method, String requestPath, String body) {
+        HttpRequest httpRequest;
+        try {
+            long start = metrics.start();
+            Credentials keys = credentials.get();
+            metrics.record(Stage.SECRET, start);
+            start = metrics.start();
+            String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+            String signature = keys.getSigner().sign(timestamp, method, requestPath, body);
+            metrics.record(Stage.SIGN, start);
+
+            httpRequest = HttpRequest.newBuilder()
+                    .uri(URI.create(apiEndpoint + requestPath))
+                    .header("CB-ACCESS-KEY", keys.getApiKey())
+                    .header("CB-ACCESS-SIGN", signature)
+                    .header("CB-ACCESS-TIMESTAMP", timestamp)
+                    .header("CB-ACCESS-PASSPHRASE", keys.getApiPassphrase())
+                    .header("Content-Type", "application/json")
+                    .timeout(requestTimeout)
+                    .method(method, body.isEmpty() ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        } catch (CoinbaseApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long sent = metrics.start();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    metrics.record(Stage.UPSTREAM, sent);
+                    if (response.statusCode() == 401) {
+                        // The keys may have been rotated: reload the secret now instead of at the next refresh
+                        credentials.forceRefresh();
+                    }
+                    if (response.statusCode() == 429) {
+                        long retryAfter = UpstreamRateLimiter.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+                        limiter.onThrottled(retryAfter);
+                        throw new CoinbaseRateLimitedException(response.body(), Math.max(1, retryAfter));
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new CoinbaseUpstreamException(response.statusCode(), response.body());
+                    }
+                    limiter.onSuccess();
+                    return response.body();
+                });
+    }
+
+    @Value
+    private static class Credentials {
+        String apiKey;
+        String apiPassphrase;
+        CoinbaseRequestSigner signer;
+    }
+}
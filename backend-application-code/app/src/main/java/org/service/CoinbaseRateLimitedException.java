@@ -0,0 +1,12 @@
+package org.service;
+
+/**
+ * A 429 for a Coinbase call: either Coinbase answered 429, or the call was shed by an {@link UpstreamRateLimiter}
+ * before being sent. {@link #getRetryAfterSeconds()} is when a retry can expect to go through.
+ */
+public class CoinbaseRateLimitedException extends CoinbaseUpstreamException {
+
+    public CoinbaseRateLimitedException(String responseBody, long retryAfterSeconds) {
+        super(429, responseBody, retryAfterSeconds);
+    }
+}
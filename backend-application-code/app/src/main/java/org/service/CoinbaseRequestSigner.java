@@ -0,0 +1,119 @@
+package org.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Produces the {@code CB-ACCESS-SIGN} header: base64 HMAC-SHA256 over {@code timestamp + method + requestPath +
+ * body}. The secret is decoded once, each thread keeps its own initialized {@link Mac}, and the prehash is
+ * UTF-8 encoded straight into a reused per-thread buffer, so signing allocates nothing but the returned String.
+ */
+public final class CoinbaseRequestSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+    private static final int ENCODED_LENGTH = 44;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    // 32 zero bytes, only ever used by warmUp
+    private static final String WARM_UP_SECRET = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> state;
+
+    /**
+     * @param base64Secret the API secret as issued, base64 encoded
+     * @throws IllegalArgumentException when the secret is not valid base64 or is rejected as an HMAC key
+     */
+    public CoinbaseRequestSigner(String base64Secret) {
+        this.key = new SecretKeySpec(Base64.getDecoder().decode(base64Secret), ALGORITHM);
+        this.state = ThreadLocal.withInitial(this::newState);
+        state.get(); // Surface key problems here rather than on the first request
+    }
+
+    /**
+     * Loads the signer and the HMAC implementation and signs once with a throwaway key, for warming up before the
+     * real secret is available.
+     */
+    public static void warmUp() {
+        new CoinbaseRequestSigner(WARM_UP_SECRET).sign("0", "GET", "/", "");
+    }
+
+    public String sign(String timestamp, String method, String requestPath, String body) {
+        State s = state.get();
+        int length = 0;
+        length = s.append(timestamp, length);
+        length = s.append(method, length);
+        length = s.append(requestPath, length);
+        length = s.append(body, length);
+        try {
+            s.mac.update(s.buffer, 0, length);
+            s.mac.doFinal(s.digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC signing failed", e);
+        }
+        int encoded = Base64.getEncoder().encode(s.digest, s.encoded);
+        return new String(s.encoded, 0, encoded, StandardCharsets.ISO_8859_1);
+    }
+
+    private State newState() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new State(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid HMAC key", e);
+        }
+    }
+
+    private static final class State {
+        private final Mac mac;
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final byte[] encoded = new byte[ENCODED_LENGTH];
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+        private State(Mac mac) {
+            this.mac = mac;
+        }
+
+        /**
+         * UTF-8 encodes {@code text} at {@code offset}, growing the buffer when needed. Unpaired surrogates
+         * become '?', as with {@link String#getBytes}.
+         */
+        private int append(String text, int offset) {
+            int length = text.length();
+            if (offset + length * 3 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, offset + length * 3));
+            }
+            byte[] b = buffer;
+            int p = offset;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[p++] = (byte) (0xC0 | (c >> 6));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                        b[p++] = (byte) (0xF0 | (codePoint >> 18));
+                        b[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        b[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        b[p++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else {
+                        b[p++] = '?';
+                    }
+                } else {
+                    b[p++] = (byte) (0xE0 | (c >> 12));
+                    b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return p;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.config.CoinbaseConfig;
 import org.dto.*;
+import org.metrics.Stage;
+import org.metrics.StageMetrics;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -19,11 +22,17 @@ import java.util.Optional;
 @Slf4j
 @RequiredArgsConstructor
 public class CoinbaseService {
-    private static final String COINBASE_CHARGES_URL = "https://api.commerce.coinbase.com/charges";
-
     private final HttpClient httpClient;
     private final ObjectMapper mapper;
     private final CoinbaseConfig config;
+    private final StageMetrics metrics;
+    private final UpstreamRateLimiter limiter;
+    // Charge creation is a POST and not idempotent, so it is never hedged; the breaker only makes it fail fast
+    private final CircuitBreaker breaker;
+
+    public String getEndpointHost() {
+        return URI.create(config.getChargesUrl()).getHost();
+    }
 
     public PaymentLink createCharge(CreatePaymentInput input) {
         validate(input);
@@ -33,43 +42,42 @@ public class CoinbaseService {
         }
 
         try {
-            CoinbaseCreateCharge body = new CoinbaseCreateCharge();
-            body.setPricing_type("fixed_price");
-            body.setLocal_price(new LocalPrice(formatAmount(input.getAmount()), "USD"));
-            body.setName(Optional.ofNullable(input.getDescription()).orElse("Payment"));
-            body.setDescription(input.getDescription());
-
-            Map<String, String> metadata = new HashMap<>();
-            if (input.getCustomerEmail() != null && !input.getCustomerEmail().isBlank()) {
-                metadata.put("customer_email", input.getCustomerEmail());
-            }
-            body.setMetadata(metadata.isEmpty() ? null : metadata);
-
-            String base = Optional.ofNullable(config.getFrontendBaseUrl()).orElse("http://localhost:3000");
-            String redirect = Optional.ofNullable(input.getRedirectUrl()).orElse(base + "/payments/success");
-            String cancel = Optional.ofNullable(input.getCancelUrl()).orElse(base + "/payments/cancel");
-            body.setRedirect_url(redirect);
-            body.setCancel_url(cancel);
-
-            String payload = mapper.writeValueAsString(body);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(COINBASE_CHARGES_URL))
-                    .header("Content-Type", "application/json")
-                    .header("X-CC-Api-Key", config.getApiKey())
-                    .timeout(Duration.ofSeconds(20))
-                    .POST(HttpRequest.BodyPublishers.ofString(payload, StandardCharsets.UTF_8))
-                    .build();
+            long start = metrics.start();
+            HttpRequest request = buildChargeRequest(input);
+            metrics.record(Stage.BUILD_UPSTREAM_REQUEST, start);
 
             log.info("Creating Coinbase charge: amount={} currency=USD", input.getAmount());
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (!breaker.tryAcquire()) {
+                throw breaker.openException();
+            }
+            HttpResponse<String> response;
+            try {
+                limiter.acquireBlocking();
+                start = metrics.start();
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                metrics.record(Stage.UPSTREAM, start);
+            } catch (Exception e) {
+                breaker.onComplete(e);
+                throw e;
+            }
+            breaker.onComplete(response.statusCode() >= 500 ? new CoinbaseUpstreamException(response.statusCode(), response.body()) : null);
+            if (response.statusCode() == 429) {
+                long retryAfter = UpstreamRateLimiter.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+                limiter.onThrottled(retryAfter);
+                log.warn("Coinbase Commerce rate limited charge creation, retry after {} s", retryAfter);
+                throw new CoinbaseRateLimitedException(response.body(), Math.max(1, retryAfter));
+            }
             if (response.statusCode() < 200 || response.statusCode() >= 300) {
                 String msg = extractErrorMessage(response.body());
                 log.error("Coinbase API error status={} body={}", response.statusCode(), response.body());
                 throw new CoinbaseApiException("Coinbase API error: " + msg);
             }
 
+            limiter.onSuccess();
+
+            start = metrics.start();
             CoinbaseChargeResponse chargeRes = mapper.readValue(response.body(), CoinbaseChargeResponse.class);
+            metrics.record(Stage.UPSTREAM_PARSE, start);
             if (chargeRes == null || chargeRes.getData() == null || chargeRes.getData().getCode() == null || chargeRes.getData().getHosted_url() == null) {
                 throw new CoinbaseApiException("Unexpected Coinbase response");
             }
@@ -92,6 +100,39 @@ public class CoinbaseService {
         }
     }
 
+    /**
+     * The charge creation request for {@code input}, which must already be valid.
+     */
+    public HttpRequest buildChargeRequest(CreatePaymentInput input) throws JsonProcessingException {
+        CoinbaseCreateCharge body = new CoinbaseCreateCharge();
+        body.setPricing_type("fixed_price");
+        body.setLocal_price(new LocalPrice(formatAmount(input.getAmount()), "USD"));
+        body.setName(Optional.ofNullable(input.getDescription()).orElse("Payment"));
+        body.setDescription(input.getDescription());
+
+        Map<String, String> metadata = new HashMap<>();
+        if (input.getCustomerEmail() != null && !input.getCustomerEmail().isBlank()) {
+            metadata.put("customer_email", input.getCustomerEmail());
+        }
+        body.setMetadata(metadata.isEmpty() ? null : metadata);
+
+        String base = Optional.ofNullable(config.getFrontendBaseUrl()).orElse("http://localhost:3000");
+        String redirect = Optional.ofNullable(input.getRedirectUrl()).orElse(base + "/payments/success");
+        String cancel = Optional.ofNullable(input.getCancelUrl()).orElse(base + "/payments/cancel");
+        body.setRedirect_url(redirect);
+        body.setCancel_url(cancel);
+
+        String payload = mapper.writeValueAsString(body);
+
+        return HttpRequest.newBuilder()
+                .uri(URI.create(config.getChargesUrl()))
+                .header("Content-Type", "application/json")
+                .header("X-CC-Api-Key", config.getApiKey())
+                .timeout(Duration.ofSeconds(20))
+                .POST(HttpRequest.BodyPublishers.ofString(payload, StandardCharsets.UTF_8))
+                .build();
+    }
+
     private void validate(CreatePaymentInput input) {
         if (input == null || input.getAmount() == null || input.getAmount() <= 0) {
             throw new CoinbaseApiException("Invalid amount");
@@ -0,0 +1,22 @@
+package org.service;
+
+import lombok.Getter;
+
+@Getter
+public class CoinbaseUpstreamException extends CoinbaseApiException {
+    private final int statusCode;
+    private final String responseBody;
+    // When a retry can expect to go through; 0 when unknown
+    private final long retryAfterSeconds;
+
+    public CoinbaseUpstreamException(int statusCode, String responseBody) {
+        this(statusCode, responseBody, 0);
+    }
+
+    public CoinbaseUpstreamException(int statusCode, String responseBody, long retryAfterSeconds) {
+        super(String.format("%d - %s", statusCode, responseBody));
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
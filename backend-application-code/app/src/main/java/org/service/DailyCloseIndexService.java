@@ -0,0 +1,214 @@
+package org.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.cache.CandleCache;
+import org.cache.SingleFlight;
+import org.candles.DailyCloseIndex;
+import org.dto.coinbaseexchange.WhatIfResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.candles.DailyCloseIndex.SECONDS_PER_DAY;
+
+/**
+ * Keeps a {@link DailyCloseIndex} per configured pair, built once from the pair's full daily history and then
+ * extended one closed day at a time through {@link CandleService}, re-fetching the last few indexed days on each
+ * refresh. Indexes are persisted under {@code directory} (when set) so a fresh container starts from the last
+ * written copy instead of re-fetching history.
+ */
+@Slf4j
+public class DailyCloseIndexService {
+
+    /**
+     * Before the exchange listed anything, so the first build covers a pair's whole history.
+     */
+    static final long HISTORY_START = 1417392000L; // 2014-12-01T00:00:00Z
+
+    static final int REVISED_DAYS = 2;
+
+    private static final String INDEX_SUFFIX = ".closes";
+
+    private final CandleService candleService;
+    private final Path directory;
+    private final Set<String> tradingPairs;
+    private final LongSupplier clock;
+    private final Map<String, DailyCloseIndex> indexes = new ConcurrentHashMap<>();
+    private final SingleFlight<String, DailyCloseIndex> refreshes = new SingleFlight<>();
+
+    public DailyCloseIndexService(CandleService candleService, Path directory, Set<String> tradingPairs) {
+        this(candleService, directory, tradingPairs, System::currentTimeMillis);
+    }
+
+    public DailyCloseIndexService(CandleService candleService, Path directory, Set<String> tradingPairs, LongSupplier clock) {
+        this.candleService = candleService;
+        this.directory = directory;
+        this.tradingPairs = Set.copyOf(tradingPairs);
+        this.clock = clock;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                log.error("Daily close indexes will not be persisted, cannot use directory {}", directory, e);
+            }
+        }
+    }
+
+    public boolean isIndexed(String tradingPair) {
+        return tradingPairs.contains(tradingPair);
+    }
+
+    /**
+     * The pair's index, refreshed first if it doesn't reach the last closed day yet. Completes with null when the
+     * pair has no daily candles.
+     */
+    public CompletableFuture<DailyCloseIndex> get(String tradingPair) {
+        DailyCloseIndex index = current(tradingPair);
+        if (index != null && index.getLastDay() >= lastClosedDay()) {
+            return CompletableFuture.completedFuture(index);
+        }
+        return refresh(tradingPair);
+    }
+
+    /**
+     * Appends the closed days missing from the pair's index, building it from the full history if there is none.
+     * The last {@value #REVISED_DAYS} indexed days are fetched again and overwritten, since a day indexed shortly
+     * after it closed may since have been revised upstream.
+     */
+    public CompletableFuture<DailyCloseIndex> refresh(String tradingPair) {
+        if (!isIndexed(tradingPair)) {
+            throw new IllegalArgumentException("No daily close index for " + tradingPair);
+        }
+        return refreshes.execute(tradingPair, () -> {
+            DailyCloseIndex index = current(tradingPair);
+            long throughDay = lastClosedDay();
+            long fromDay = index == null ? 0 : Math.max(index.getFirstDay(), index.getLastDay() - REVISED_DAYS + 1);
+            long from = index == null ? HISTORY_START : fromDay * SECONDS_PER_DAY;
+            return candleService.getCandles(tradingPair, SECONDS_PER_DAY, from, throughDay * SECONDS_PER_DAY)
+                    .thenApply(daily -> {
+                        DailyCloseIndex updated = index == null
+                                ? DailyCloseIndex.build(daily, throughDay)
+                                : index.revise(daily, fromDay, throughDay);
+                        if (updated != null && updated != index) {
+                            indexes.put(tradingPair, updated);
+                            persist(tradingPair, updated);
+                            log.info("Daily close index for {} now covers {} days", tradingPair, updated.size());
+                        }
+                        return updated;
+                    });
+        });
+    }
+
+    /**
+     * Refreshes every configured pair concurrently. Completes with the last indexed day's start time per pair;
+     * pairs that failed to refresh are logged and left out.
+     */
+    public CompletableFuture<Map<String, Long>> refreshAll() {
+        Map<String, CompletableFuture<DailyCloseIndex>> pending = new TreeMap<>();
+        for (String tradingPair : tradingPairs) {
+            pending.put(tradingPair, refresh(tradingPair).exceptionally(e -> {
+                log.error("Failed to refresh daily close index for {}", tradingPair, e);
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, Long> lastDays = new TreeMap<>();
+            pending.forEach((tradingPair, future) -> {
+                DailyCloseIndex index = future.join();
+                if (index != null) {
+                    lastDays.put(tradingPair, index.getLastDay() * SECONDS_PER_DAY);
+                }
+            });
+            return lastDays;
+        });
+    }
+
+    /**
+     * What-if over daily closes from the index, valuing the position at today's still-open candle when
+     * {@code end} reaches it. Completes with null when the index can't answer (no closed day in range), in which
+     * case callers fall back to fetching candles.
+     */
+    public CompletableFuture<WhatIfResult> whatIf(String tradingPair, double amount, long start, long end, int maxPoints) {
+        return get(tradingPair).thenCompose(index -> {
+            if (index == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // Same candles as a range fetch: the first day starting at or after start, the last starting by end.
+            long fromDay = Math.max(Math.floorDiv(start + SECONDS_PER_DAY - 1, SECONDS_PER_DAY), index.getFirstDay());
+            long endDay = Math.floorDiv(end, SECONDS_PER_DAY);
+            long toDay = Math.min(endDay, index.getLastDay());
+            if (fromDay > toDay) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (endDay <= index.getLastDay()) {
+                return CompletableFuture.completedFuture(
+                        WhatIfCalculator.calculate(tradingPair, amount, index, fromDay, toDay, Double.NaN, maxPoints));
+            }
+            return candleService.getLatestCandles(tradingPair, SECONDS_PER_DAY).thenApply(latest -> {
+                boolean openDay = !latest.isEmpty()
+                        && Math.floorDiv(latest.lastTime(), SECONDS_PER_DAY) == toDay + 1
+                        && latest.lastTime() <= end;
+                double openDayClose = openDay ? latest.close(latest.size() - 1) : Double.NaN;
+                return WhatIfCalculator.calculate(tradingPair, amount, index, fromDay, toDay, openDayClose, maxPoints);
+            });
+        });
+    }
+
+    private DailyCloseIndex current(String tradingPair) {
+        DailyCloseIndex index = indexes.get(tradingPair);
+        if (index == null && directory != null) {
+            index = load(tradingPair);
+            if (index != null) {
+                indexes.putIfAbsent(tradingPair, index);
+            }
+        }
+        return index;
+    }
+
+    private long lastClosedDay() {
+        return CandleCache.currentBucket(clock.getAsLong(), SECONDS_PER_DAY) / SECONDS_PER_DAY - 1;
+    }
+
+    private DailyCloseIndex load(String tradingPair) {
+        Path path = directory.resolve(tradingPair + INDEX_SUFFIX);
+        try {
+            return DailyCloseIndex.read(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable daily close index {}", path, e);
+            return null;
+        }
+    }
+
+    private void persist(String tradingPair, DailyCloseIndex index) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            index.write(directory.resolve(tradingPair + INDEX_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Failed to persist daily close index for {}", tradingPair, e);
+        }
+    }
+
+    /**
+     * Pairs from a comma-separated list such as {@code "BTC-USD,ETH-USD"}.
+     */
+    public static Set<String> parsePairs(String configured) {
+        return Arrays.stream(configured.split(","))
+                .map(String::trim)
+                .filter(pair -> !pair.isEmpty())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,146 @@
+package org.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The exchange's product ids from {@code /products}, held as a sorted array so a request's trading pair is
+ * checked and normalized to the exchange's casing with a binary search instead of a signed upstream call that
+ * ends in a 4xx.
+ * <p>
+ * The catalog is never loaded on the request path: the first lookup (or startup priming) starts a load in the
+ * background, and once {@code refreshAfterMillis} old it is reloaded the same way while lookups keep using the
+ * current copy. Until the first load succeeds every pair is accepted, upper-cased, and left for the exchange to
+ * judge; a failed reload keeps the last catalog and is retried after {@value #RETRY_AFTER_FAILURE_MILLIS} ms.
+ */
+@Slf4j
+public class ProductCatalog {
+
+    static final long RETRY_AFTER_FAILURE_MILLIS = 60_000;
+
+    private final Supplier<CompletableFuture<String>> loader;
+    private final ObjectMapper objectMapper;
+    private final long refreshAfterMillis;
+    private final LongSupplier clock;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    // Sorted; null until the first successful load
+    private volatile String[] productIds;
+    private volatile long nextRefreshAt;
+
+    public ProductCatalog(Supplier<CompletableFuture<String>> loader, ObjectMapper objectMapper, long refreshAfterMillis) {
+        this(loader, objectMapper, refreshAfterMillis, System::currentTimeMillis);
+    }
+
+    public ProductCatalog(Supplier<CompletableFuture<String>> loader, ObjectMapper objectMapper, long refreshAfterMillis,
+                          LongSupplier clock) {
+        if (refreshAfterMillis <= 0) {
+            throw new IllegalArgumentException("refreshAfterMillis must be positive");
+        }
+        this.loader = loader;
+        this.objectMapper = objectMapper;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * The exchange's id for {@code tradingPair} matched regardless of case, or null when the catalog is loaded
+     * and has no such product. Before the first load this is {@code tradingPair} upper-cased.
+     */
+    public String normalize(String tradingPair) {
+        if (clock.getAsLong() >= nextRefreshAt) {
+            refreshInBackground();
+        }
+        String[] ids = productIds;
+        if (ids == null) {
+            return tradingPair.toUpperCase(Locale.ROOT);
+        }
+        // Ids are upper case, so a correctly cased pair is found without allocating
+        int index = Arrays.binarySearch(ids, tradingPair);
+        if (index < 0) {
+            index = Arrays.binarySearch(ids, tradingPair.toUpperCase(Locale.ROOT));
+        }
+        return index >= 0 ? ids[index] : null;
+    }
+
+    public boolean isLoaded() {
+        return productIds != null;
+    }
+
+    public int size() {
+        String[] ids = productIds;
+        return ids != null ? ids.length : 0;
+    }
+
+    /**
+     * Loads the catalog now. On failure the previous catalog is kept and the future completes exceptionally.
+     */
+    public CompletableFuture<Integer> refresh() {
+        CompletableFuture<String> body;
+        try {
+            body = loader.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return body.thenApply(json -> {
+            String[] ids = parse(objectMapper, json);
+            productIds = ids;
+            nextRefreshAt = clock.getAsLong() + refreshAfterMillis;
+            return ids.length;
+        });
+    }
+
+    /**
+     * Starts a reload unless one is already running.
+     */
+    public void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresh().whenComplete((products, error) -> {
+            if (error == null) {
+                log.info("Product catalog loaded with {} products", products);
+            } else {
+                nextRefreshAt = clock.getAsLong() + Math.min(refreshAfterMillis, RETRY_AFTER_FAILURE_MILLIS);
+                log.warn("Product catalog refresh failed, {}: {}",
+                        isLoaded() ? "keeping " + size() + " products" : "accepting every pair", error.toString());
+            }
+            refreshing.set(false);
+        });
+    }
+
+    /**
+     * The sorted, upper-case product ids in a {@code /products} body. An empty list is rejected, since it would
+     * reject every pair.
+     */
+    static String[] parse(ObjectMapper objectMapper, String body) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        TreeSet<String> ids = new TreeSet<>();
+        for (JsonNode product : root) {
+            String id = product.path("id").asText(null);
+            if (id != null && !id.isBlank()) {
+                ids.add(id.toUpperCase(Locale.ROOT));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No products in the /products response");
+        }
+        return ids.toArray(new String[0]);
+    }
+}
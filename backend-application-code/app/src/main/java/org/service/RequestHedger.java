@@ -0,0 +1,149 @@
+package org.service;
+
+import org.metrics.LatencyHistogram;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent Coinbase calls: when the first attempt hasn't answered within the recent p95
+ * latency, a second one is sent and whichever answers first wins, so one slow response no longer sets the
+ * invocation's latency. An attempt that fails leaves the other to answer; the call fails only once both have.
+ *
+ * <p>Hedges are capped at {@code maxHedgeRatio} of calls so a slow upstream doesn't get double the traffic, and
+ * the hedge attempt may decline (e.g. no rate limit token is free right now). Latencies of successful attempts
+ * are kept in two rotating {@link LatencyHistogram}s, so the delay follows the upstream as it speeds up or slows
+ * down.
+ */
+public class RequestHedger {
+
+    private static final int WINDOW = 500;
+    private static final int MIN_SAMPLES = 20;
+    private static final double QUANTILE = 0.95;
+
+    private final long defaultDelayNanos;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double maxHedgeRatio;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private volatile LatencyHistogram current = new LatencyHistogram();
+    private volatile LatencyHistogram previous;
+
+    public RequestHedger(long defaultDelayMillis, long minDelayMillis, long maxDelayMillis, double maxHedgeRatio) {
+        this.defaultDelayNanos = TimeUnit.MILLISECONDS.toNanos(defaultDelayMillis);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    /**
+     * Runs {@code attempt} and, if it is still pending after the hedge delay, {@code hedge}. {@code hedge} returns
+     * null to decline.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, Supplier<CompletableFuture<T>> hedge) {
+        calls.increment();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        start(attempt, false, result, pending, firstError);
+        if (maxHedgeRatio > 0 && !result.isDone()) {
+            CompletableFuture.delayedExecutor(hedgeDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.isDone() || hedges.sum() >= maxHedgeRatio * calls.sum() || !addAttempt(pending)) {
+                    return;
+                }
+                hedges.increment();
+                start(hedge, true, result, pending, firstError);
+            });
+        }
+        return result;
+    }
+
+    public long hedgeDelayNanos() {
+        LatencyHistogram latencies = previous;
+        if (latencies == null) {
+            latencies = current;
+            if (latencies.getCount() < MIN_SAMPLES) {
+                return defaultDelayNanos;
+            }
+        }
+        long p95 = (long) (latencies.getPercentileMillis(QUANTILE) * 1_000_000);
+        return Math.min(maxDelayNanos, Math.max(minDelayNanos, p95));
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> supplier, boolean isHedge, CompletableFuture<T> result,
+                           AtomicInteger pending, AtomicReference<Throwable> firstError) {
+        long start = System.nanoTime();
+        CompletableFuture<T> attempt;
+        try {
+            attempt = supplier.get();
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        if (attempt == null) {
+            // Declined hedge: the first attempt decides the call alone
+            finish(pending, firstError, result);
+            return;
+        }
+        attempt.whenComplete((value, error) -> {
+            if (error == null) {
+                record(System.nanoTime() - start);
+                if (result.complete(value) && isHedge) {
+                    hedgeWins.increment();
+                }
+                return;
+            }
+            firstError.compareAndSet(null, error);
+            finish(pending, firstError, result);
+        });
+    }
+
+    private static <T> void finish(AtomicInteger pending, AtomicReference<Throwable> firstError, CompletableFuture<T> result) {
+        if (pending.decrementAndGet() == 0 && firstError.get() != null) {
+            result.completeExceptionally(firstError.get());
+        }
+    }
+
+    // A hedge may only start while the first attempt is still pending
+    private static boolean addAttempt(AtomicInteger pending) {
+        int count;
+        do {
+            count = pending.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!pending.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void record(long nanos) {
+        LatencyHistogram latencies = current;
+        latencies.recordNanos(nanos);
+        if (latencies.getCount() >= WINDOW) {
+            synchronized (this) {
+                if (current == latencies) {
+                    previous = latencies;
+                    current = new LatencyHistogram();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side token bucket for one Coinbase rate limit. A call takes a token, waits up to the queueing limit for
+ * one, or is shed at once with a {@link CoinbaseRateLimitedException} that says when to retry, so a burst costs
+ * callers a short delay or a fast 429 instead of tripping Coinbase's limit.
+ *
+ * <p>The rate adapts to what Coinbase reports: a 429 halves it and stops sending until {@code Retry-After} (a
+ * second when absent) has passed, and each success adds back a twentieth of the configured rate. Limits apply per
+ * container, so the configured rate is the account's limit divided among the containers expected to share it.
+ */
+@Slf4j
+public class UpstreamRateLimiter {
+
+    private static final CompletableFuture<Void> READY = CompletableFuture.completedFuture(null);
+    private static final long DEFAULT_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double RECOVERY_STEP = 0.05;
+    private static final double MIN_RATE_FRACTION = 0.1;
+
+    private final String name;
+    private final double maxRate;
+    private final double burst;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+
+    // Guarded by this. tokens goes negative by the number of callers already queued for a token.
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long throttled;
+    private long shed;
+
+    public UpstreamRateLimiter(String name, double ratePerSecond, int burst, long maxWaitMillis) {
+        this(name, ratePerSecond, burst, maxWaitMillis, System::nanoTime);
+    }
+
+    UpstreamRateLimiter(String name, double ratePerSecond, int burst, long maxWaitMillis, LongSupplier nanoClock) {
+        this.name = name;
+        this.maxRate = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.nanoClock = nanoClock;
+        this.rate = ratePerSecond;
+        this.tokens = this.burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Completes when the call may be sent, or fails with a {@link CoinbaseRateLimitedException} when it would have
+     * to wait longer than the queueing limit.
+     */
+    public CompletableFuture<Void> acquire() {
+        long wait;
+        try {
+            wait = reserve();
+        } catch (CoinbaseRateLimitedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (wait == 0) {
+            return READY;
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * {@link #acquire()} for blocking callers: sleeps for the queued wait.
+     */
+    public void acquireBlocking() {
+        long wait = reserve();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CoinbaseApiException("Interrupted waiting for the " + name + " rate limit", e);
+            }
+        }
+    }
+
+    /**
+     * Takes a token only if one is free right now, for optional calls such as hedges that should never queue.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        if (now < refilledAt || tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (rate < maxRate) {
+            rate = Math.min(maxRate, rate + maxRate * RECOVERY_STEP);
+        }
+    }
+
+    /**
+     * Records a 429 from Coinbase. {@code retryAfterSeconds} is the {@code Retry-After} value, or negative when
+     * there was none. Concurrent 429s for calls sent before the pause started only extend it, so one burst
+     * halves the rate once.
+     */
+    public synchronized void onThrottled(long retryAfterSeconds) {
+        long now = nanoClock.getAsLong();
+        if (now >= refilledAt) {
+            refill(now);
+            rate = Math.max(maxRate * MIN_RATE_FRACTION, rate / 2);
+            log.warn("Coinbase {} rate limit hit, slowing to {} requests/s (throttled={} shed={})",
+                    name, String.format("%.1f", rate), throttled + 1, shed);
+        }
+        tokens = Math.min(tokens, 0);
+        refilledAt = Math.max(refilledAt, now + (retryAfterSeconds > 0 ? TimeUnit.SECONDS.toNanos(retryAfterSeconds) : DEFAULT_PAUSE_NANOS));
+        throttled++;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized long getThrottled() {
+        return throttled;
+    }
+
+    public synchronized long getShed() {
+        return shed;
+    }
+
+    /**
+     * Seconds from a {@code Retry-After} header, either delay-seconds or an HTTP date; -1 when absent or invalid.
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toSeconds());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    // Nanoseconds until the caller's token is available, with the token taken
+    private synchronized long reserve() {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        long wait = Math.max(0, refilledAt - now);
+        if (tokens < 1) {
+            wait += (long) ((1 - tokens) / rate * 1e9);
+        }
+        if (wait > maxWaitNanos) {
+            shed++;
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999));
+            throw new CoinbaseRateLimitedException(
+                    String.format("{\"message\":\"Coinbase %s rate limit reached, retry after %d s\"}", name, retryAfter), retryAfter);
+        }
+        tokens -= 1;
+        return wait;
+    }
+
+    // Tokens accrue from refilledAt, which lies in the future while paused after a 429
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.service;
+
+import org.candles.CandleSeries;
+import org.candles.DailyCloseIndex;
+import org.dto.coinbaseexchange.WhatIfPoint;
+import org.dto.coinbaseexchange.WhatIfResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Values a lump-sum purchase over a series of closes: bought at the close of the first candle, marked to market
+ * at every close after it. Single pass over the primitive arrays.
+ */
+public final class WhatIfCalculator {
+
+    private WhatIfCalculator() {
+    }
+
+    public static WhatIfResult calculate(String tradingPair, double amount, CandleSeries series, int maxPoints) {
+        if (series.isEmpty()) {
+            throw new IllegalArgumentException("No candles to value");
+        }
+        return calculate(tradingPair, amount, series.size(), series::time, series::close, maxPoints);
+    }
+
+    /**
+     * Values over the indexed days {@code fromDay..toDay}, followed by {@code openDayClose} for the next (still
+     * open) day unless it is NaN.
+     */
+    public static WhatIfResult calculate(String tradingPair, double amount, DailyCloseIndex index,
+                                         long fromDay, long toDay, double openDayClose, int maxPoints) {
+        if (fromDay > toDay || !index.contains(fromDay) || !index.contains(toDay)) {
+            throw new IllegalArgumentException("Days outside the index");
+        }
+        int closedDays = (int) (toDay - fromDay + 1);
+        int size = Double.isNaN(openDayClose) ? closedDays : closedDays + 1;
+        return calculate(tradingPair, amount, size,
+                i -> (fromDay + i) * DailyCloseIndex.SECONDS_PER_DAY,
+                i -> i < closedDays ? index.close(fromDay + i) : openDayClose,
+                maxPoints);
+    }
+
+    private static WhatIfResult calculate(String tradingPair, double amount, int size,
+                                          IntToLongFunction time, IntToDoubleFunction close, int maxPoints) {
+        double buyPrice = close.applyAsDouble(0);
+        double units = amount / buyPrice;
+
+        double peak = amount;
+        double maxDrawdown = 0;
+        for (int i = 0; i < size; i++) {
+            double value = units * close.applyAsDouble(i);
+            if (value > peak) {
+                peak = value;
+            } else if (peak > 0) {
+                maxDrawdown = Math.max(maxDrawdown, (peak - value) / peak);
+            }
+        }
+
+        double finalPrice = close.applyAsDouble(size - 1);
+        double finalValue = units * finalPrice;
+
+        WhatIfResult result = new WhatIfResult();
+        result.setTradingPair(tradingPair);
+        result.setAmount(amount);
+        result.setStart(time.applyAsLong(0));
+        result.setEnd(time.applyAsLong(size - 1));
+        result.setBuyPrice(buyPrice);
+        result.setFinalPrice(finalPrice);
+        result.setUnits(units);
+        result.setFinalValue(finalValue);
+        result.setRoi((finalValue - amount) / amount);
+        result.setMaxDrawdown(maxDrawdown);
+        if (maxPoints > 0) {
+            result.setCurve(curve(size, time, close, units, maxPoints));
+        }
+        return result;
+    }
+
+    /**
+     * Evenly strided value curve of at most {@code maxPoints} points that always ends on the last candle.
+     */
+    static List<WhatIfPoint> curve(int size, IntToLongFunction time, IntToDoubleFunction close, double units, int maxPoints) {
+        int points = Math.min(size, maxPoints);
+        List<WhatIfPoint> curve = new ArrayList<>(points);
+        for (int p = 1; p <= points; p++) {
+            int index = (int) ((long) p * size / points) - 1;
+            curve.add(new WhatIfPoint(time.applyAsLong(index), units * close.applyAsDouble(index)));
+        }
+        return curve;
+    }
+}
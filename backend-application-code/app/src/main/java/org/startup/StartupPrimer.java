@@ -0,0 +1,222 @@
+package org.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.candles.CandleSeries;
+import org.config.Environment;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.dagger.ServiceComponent;
+import org.service.CoinbaseRequestSigner;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Moves first-request work into container init: Jackson (de)serializers for every {@code org.dto} type, the
+ * request signer, credentials, the product catalog, DNS for the upstream hosts and a connection to the exchange.
+ * <p>
+ * With {@code STARTUP_PRIMING=eager} all of it runs in the handler constructor. Under SnapStart eager priming is
+ * skipped during the snapshot init: only the offline warm-up runs before the checkpoint, so the snapshot holds
+ * no secret and no connection, and everything that talks to the network runs after restore. Every step is
+ * best-effort: a failure is logged and the handler falls back to doing the work on first use.
+ */
+@Slf4j
+public final class StartupPrimer implements Resource {
+
+    public static final String PRIMING_ENV = "STARTUP_PRIMING";
+    private static final String INITIALIZATION_TYPE_ENV = "AWS_LAMBDA_INITIALIZATION_TYPE";
+    private static final String SNAP_START_INITIALIZATION = "snap-start";
+
+    private static final String DTO_PACKAGE = "org.dto";
+    private static final long CONNECTION_WARM_TIMEOUT_SECONDS = 3;
+
+    // CRaC holds registered resources weakly
+    private static StartupPrimer installed;
+
+    /**
+     * Upstreams a handler talks to; each brings its own priming steps.
+     */
+    public enum Client {
+        /** Coinbase Commerce (charges). */
+        COMMERCE,
+        /** Coinbase Exchange: credentials, signer and a pooled connection. */
+        EXCHANGE
+    }
+
+    private final ServiceComponent component;
+    private final Set<Client> clients;
+
+    private StartupPrimer(ServiceComponent component, Set<Client> clients) {
+        this.component = component;
+        this.clients = clients;
+    }
+
+    /**
+     * Registers the checkpoint/restore hooks for this container and primes now when eager priming is enabled and
+     * the container isn't initializing for a SnapStart snapshot. Only the first call in a container has any effect.
+     *
+     * @return {@code component}, so handlers can install while delegating to their component constructor
+     */
+    public static synchronized ServiceComponent install(ServiceComponent component, Client... clients) {
+        if (installed != null) {
+            return component;
+        }
+        installed = new StartupPrimer(component, clients.length == 0 ? EnumSet.noneOf(Client.class) : EnumSet.copyOf(Arrays.asList(clients)));
+        Core.getGlobalContext().register(installed);
+        Environment env = component.getEnvironment();
+        boolean snapshotInit = SNAP_START_INITIALIZATION.equals(env.get(INITIALIZATION_TYPE_ENV, null));
+        if ("eager".equalsIgnoreCase(env.get(PRIMING_ENV, null)) && !snapshotInit) {
+            long start = System.nanoTime();
+            installed.warmUp();
+            installed.load();
+            installed.warmConnections();
+            log.info("Startup priming took {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return component;
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        warmUp();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        load();
+        warmConnections();
+    }
+
+    // Needs neither the network nor credentials, so it is safe to capture in a snapshot
+    private void warmUp() {
+        attempt("warm object mapper", this::warmObjectMapper);
+        if (clients.contains(Client.EXCHANGE)) {
+            attempt("warm request signer", CoinbaseRequestSigner::warmUp);
+        }
+    }
+
+    private void load() {
+        if (clients.contains(Client.EXCHANGE)) {
+            attempt("load credentials", () -> component.getCoinbaseExchangeService().prime());
+            attempt("load product catalog", () -> component.getProductCatalog().refresh()
+                    .get(CONNECTION_WARM_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        resolveHosts();
+    }
+
+    private void warmObjectMapper() throws IOException {
+        ObjectMapper objectMapper = component.getObjectMapper();
+        int types = 0;
+        for (Class<?> type : dtoClasses()) {
+            if (type.isInterface() || type.isAnonymousClass()) {
+                continue;
+            }
+            objectMapper.canSerialize(type);
+            objectMapper.canDeserialize(objectMapper.constructType(type));
+            types++;
+        }
+        CandleSeries sample = objectMapper.readValue("[[60,1,2,1,2,1],[0,1,2,1,2,1]]", CandleSeries.class);
+        objectMapper.writeValueAsString(sample);
+        log.info("Primed object mapper for {} dto types", types);
+    }
+
+    private void resolveHosts() {
+        List<String> hosts = new ArrayList<>();
+        if (clients.contains(Client.COMMERCE)) {
+            hosts.add(component.getCoinbaseService().getEndpointHost());
+        }
+        if (clients.contains(Client.EXCHANGE)) {
+            hosts.add(component.getCoinbaseExchangeService().getEndpointHost());
+        }
+        for (String host : hosts) {
+            attempt("resolve " + host, () -> InetAddress.getAllByName(host));
+        }
+    }
+
+    private void warmConnections() {
+        if (clients.contains(Client.EXCHANGE)) {
+            attempt("warm exchange connection", () -> component.getCoinbaseExchangeService().warmConnection()
+                    .get(CONNECTION_WARM_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Classes under {@code org.dto}, read from the handler's own classpath entry (a directory once Lambda has
+     * unpacked the zip, or a jar when run locally from one).
+     */
+    static List<Class<?>> dtoClasses() throws IOException {
+        String path = DTO_PACKAGE.replace('.', '/');
+        ClassLoader loader = StartupPrimer.class.getClassLoader();
+        List<String> names = new ArrayList<>();
+        Enumeration<URL> roots = loader.getResources(path);
+        while (roots.hasMoreElements()) {
+            URL root = roots.nextElement();
+            if ("file".equals(root.getProtocol())) {
+                collect(new File(URLDecoder.decode(root.getPath(), StandardCharsets.UTF_8)), DTO_PACKAGE, names);
+            } else if ("jar".equals(root.getProtocol())) {
+                JarURLConnection connection = (JarURLConnection) root.openConnection();
+                connection.setUseCaches(false); // Closing a cached JarFile would break the class loader
+                try (JarFile jar = connection.getJarFile()) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        String entry = entries.nextElement().getName();
+                        if (entry.startsWith(path + "/") && entry.endsWith(".class")) {
+                            names.add(entry.substring(0, entry.length() - ".class".length()).replace('/', '.'));
+                        }
+                    }
+                }
+            }
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (String name : names) {
+            try {
+                classes.add(Class.forName(name, false, loader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("Skipping {}", name, e);
+            }
+        }
+        return classes;
+    }
+
+    private static void collect(File directory, String packageName, List<String> names) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(file, packageName + "." + file.getName(), names);
+            } else if (file.getName().endsWith(".class")) {
+                names.add(packageName + "." + file.getName().substring(0, file.getName().length() - ".class".length()));
+            }
+        }
+    }
+
+    private static void attempt(String step, Step action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.warn("Startup priming could not {}: {}", step, e.toString());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,57 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CandleCacheTest {
+
+    private static final int MINUTE = 60;
+    private static final long WINDOW_END = 1_700_000_040L;
+
+    private final AtomicLong now = new AtomicLong();
+    private final CandleCache<String> cache = new CandleCache<>(1_000, value -> 1, now::get);
+
+    @Test
+    void settlesAFewMinutesAfterACandleCloses() {
+        assertEquals(TimeUnit.MINUTES.toMillis(5), CandleCache.settleMillis(MINUTE));
+        assertEquals(TimeUnit.MINUTES.toMillis(15), CandleCache.settleMillis(15 * MINUTE));
+        assertEquals(TimeUnit.HOURS.toMillis(1), CandleCache.settleMillis(24 * 60 * MINUTE));
+
+        long closedAt = (WINDOW_END + MINUTE) * 1000;
+        assertFalse(CandleCache.isSettled(closedAt, MINUTE, WINDOW_END));
+        assertFalse(CandleCache.isSettled(closedAt + TimeUnit.MINUTES.toMillis(5) - 1, MINUTE, WINDOW_END));
+        assertTrue(CandleCache.isSettled(closedAt + TimeUnit.MINUTES.toMillis(5), MINUTE, WINDOW_END));
+    }
+
+    @Test
+    void keepsAJustClosedWindowOnlyForTheShortTtl() {
+        now.set((WINDOW_END + MINUTE) * 1000 + 1_000);
+        cache.put("BTC-USD", MINUTE, WINDOW_END - 299 * MINUTE, WINDOW_END, "window");
+
+        // A minute candle is re-fetched every 6 s until it settles
+        now.addAndGet(5_999);
+        assertEquals("window", get());
+        now.addAndGet(1);
+        assertNull(get());
+    }
+
+    @Test
+    void keepsASettledWindowUntilEvicted() {
+        now.set((WINDOW_END + MINUTE) * 1000 + CandleCache.settleMillis(MINUTE));
+        cache.put("BTC-USD", MINUTE, WINDOW_END - 299 * MINUTE, WINDOW_END, "window");
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(12));
+        assertEquals("window", get());
+    }
+
+    private String get() {
+        return cache.get("BTC-USD", MINUTE, WINDOW_END - 299 * MINUTE, WINDOW_END);
+    }
+}
@@ -0,0 +1,82 @@
+package org.candles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CandleSeriesBinaryTest {
+
+    @Test
+    void roundTripsPricesAsScaledDeltas() {
+        CandleSeries series = CandleSeries.builder(3)
+                .add(1_700_000_000L, 60_000.12, 60_010.5, 60_005, 60_001.99, 12.34567891)
+                .add(1_700_000_060L, 59_950.01, 60_002, 60_001.99, 59_960.4, 0)
+                .add(1_700_000_180L, 59_960.4, 59_990, 59_960.4, 59_989.99, 3.5)
+                .build();
+
+        byte[] encoded = CandleSeriesBinary.encode(series);
+
+        assertEquals(CandleSeriesBinary.VERSION, encoded[0]);
+        assertEquals(2, encoded[1]);
+        assertEquals(8, encoded[2]);
+        assertEquals(series, CandleSeriesBinary.decode(encoded));
+    }
+
+    @Test
+    void roundTripsNegativeAndWholeValues() {
+        CandleSeries series = CandleSeries.builder(2)
+                .add(-120, -5, 7, -3, 0, 1_000_000)
+                .add(1_700_000_000L, 3, 9, 4, 8, 2)
+                .build();
+
+        byte[] encoded = CandleSeriesBinary.encode(series);
+
+        assertEquals(0, encoded[1]);
+        assertEquals(0, encoded[2]);
+        assertEquals(series, CandleSeriesBinary.decode(encoded));
+    }
+
+    @Test
+    void fallsBackToRawDoublesForValuesNoDecimalsHold() {
+        CandleSeries series = CandleSeries.builder(2)
+                .add(0, Math.PI, 4, 3, 3.5, 1.0 / 3)
+                .add(60, 3, 4, 3.5, Math.E, 2)
+                .build();
+
+        byte[] encoded = CandleSeriesBinary.encode(series);
+
+        assertEquals(CandleSeriesBinary.RAW_DOUBLES, encoded[1] & 0xFF);
+        assertEquals(CandleSeriesBinary.RAW_DOUBLES, encoded[2] & 0xFF);
+        assertEquals(series, CandleSeriesBinary.decode(encoded));
+    }
+
+    @Test
+    void roundTripsAnEmptySeries() {
+        assertEquals(0, CandleSeriesBinary.decode(CandleSeriesBinary.encode(CandleSeries.empty())).size());
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        CandleSeries series = CandleSeries.builder(2)
+                .add(0, 1.25, 2, 1.5, 1.75, 10)
+                .add(60, Math.PI, 2, 1.5, 1.75, 10)
+                .build();
+        byte[] encoded = CandleSeriesBinary.encode(series);
+
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> CandleSeriesBinary.decode(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsAnUnknownVersion() {
+        byte[] encoded = CandleSeriesBinary.encode(CandleSeries.empty());
+        encoded[0] = CandleSeriesBinary.VERSION + 1;
+
+        assertThrows(IllegalArgumentException.class, () -> CandleSeriesBinary.decode(encoded));
+    }
+}
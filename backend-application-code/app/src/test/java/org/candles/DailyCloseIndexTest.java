@@ -0,0 +1,71 @@
+package org.candles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.candles.DailyCloseIndex.SECONDS_PER_DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DailyCloseIndexTest {
+
+    private static final long FIRST_DAY = 19_000;
+
+    @Test
+    void forwardFillsDaysWithoutCandles() {
+        DailyCloseIndex index = DailyCloseIndex.build(daily(0, 10, 2, 12), FIRST_DAY + 3);
+
+        assertEquals(4, index.size());
+        assertEquals(10, index.close(FIRST_DAY));
+        assertEquals(10, index.close(FIRST_DAY + 1));
+        assertEquals(12, index.close(FIRST_DAY + 2));
+        assertEquals(12, index.close(FIRST_DAY + 3));
+    }
+
+    @Test
+    void appendLeavesIndexedDaysAlone() {
+        DailyCloseIndex index = DailyCloseIndex.build(daily(0, 10, 1, 11), FIRST_DAY + 1);
+
+        assertSame(index, index.append(daily(1, 99), FIRST_DAY + 1));
+        DailyCloseIndex appended = index.append(daily(1, 99, 2, 12), FIRST_DAY + 2);
+        assertEquals(11, appended.close(FIRST_DAY + 1));
+        assertEquals(12, appended.close(FIRST_DAY + 2));
+    }
+
+    @Test
+    void reviseOverwritesIndexedDaysFromTheFirstRefetchedCandle() {
+        DailyCloseIndex index = DailyCloseIndex.build(daily(0, 10, 1, 11, 2, 12), FIRST_DAY + 2);
+
+        DailyCloseIndex revised = index.revise(daily(1, 21, 2, 22, 3, 23), FIRST_DAY + 1, FIRST_DAY + 3);
+
+        assertEquals(4, revised.size());
+        assertEquals(10, revised.close(FIRST_DAY));
+        assertEquals(21, revised.close(FIRST_DAY + 1));
+        assertEquals(22, revised.close(FIRST_DAY + 2));
+        assertEquals(23, revised.close(FIRST_DAY + 3));
+    }
+
+    @Test
+    void reviseKeepsDaysTheRefetchHasNoCandleFor() {
+        DailyCloseIndex index = DailyCloseIndex.build(daily(0, 10, 1, 11, 2, 12), FIRST_DAY + 2);
+
+        DailyCloseIndex revised = index.revise(daily(2, 22), FIRST_DAY + 1, FIRST_DAY + 2);
+        assertEquals(11, revised.close(FIRST_DAY + 1));
+        assertEquals(22, revised.close(FIRST_DAY + 2));
+
+        DailyCloseIndex unchanged = index.revise(CandleSeries.empty(), FIRST_DAY + 1, FIRST_DAY + 2);
+        assertEquals(11, unchanged.close(FIRST_DAY + 1));
+        assertEquals(12, unchanged.close(FIRST_DAY + 2));
+    }
+
+    /**
+     * Daily candles from (day offset, close) pairs.
+     */
+    private static CandleSeries daily(double... dayCloses) {
+        CandleSeries.Builder builder = CandleSeries.builder(dayCloses.length / 2);
+        for (int i = 0; i < dayCloses.length; i += 2) {
+            double close = dayCloses[i + 1];
+            builder.add((FIRST_DAY + (long) dayCloses[i]) * SECONDS_PER_DAY, close, close, close, close, 1);
+        }
+        return builder.build();
+    }
+}
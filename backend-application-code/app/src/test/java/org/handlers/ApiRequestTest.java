@@ -0,0 +1,64 @@
+package org.handlers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiRequestTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void readsTheFieldsTheHandlersUse() throws IOException {
+        ApiRequest request = read("{\"resource\":\"/coinbase-proxy/\",\"httpMethod\":\"POST\","
+                + "\"headers\":{\"accept\":\"application/json\",\"Accept-Encoding\":\"gzip\",\"Host\":\"x\"},"
+                + "\"requestContext\":{\"stage\":\"prod\"},\"body\":\"eyJhIjoxfQ==\",\"isBase64Encoded\":true}");
+
+        assertEquals("/coinbase-proxy", request.route());
+        assertEquals("POST", request.getHttpMethod());
+        assertEquals("{\"a\":1}", request.getBody());
+        assertTrue(request.prefers("application/json"));
+        assertTrue(request.isFromGateway());
+    }
+
+    @Test
+    void onlyGatewayEventsCarryARequestContext() throws IOException {
+        assertFalse(read("{\"resource\":\"/tasks/refresh-daily-closes\"}").isFromGateway());
+        assertFalse(read("{\"resource\":\"/charges\",\"requestContext\":null}").isFromGateway());
+
+        APIGatewayProxyRequestEvent event = new APIGatewayProxyRequestEvent().withResource("/charges");
+        assertFalse(ApiRequest.from(event).isFromGateway());
+        event.setRequestContext(new APIGatewayProxyRequestEvent.ProxyRequestContext());
+        assertTrue(ApiRequest.from(event).isFromGateway());
+    }
+
+    @Test
+    void rejectsABodyFlaggedBase64ThatIsNot() {
+        assertThrows(IllegalArgumentException.class, () -> read("{\"body\":\"{}\",\"isBase64Encoded\":true}"));
+        APIGatewayProxyRequestEvent event = new APIGatewayProxyRequestEvent().withBody("{}").withIsBase64Encoded(true);
+        assertThrows(IllegalArgumentException.class, () -> ApiRequest.from(event));
+    }
+
+    @Test
+    void prefersOnlyTheFirstAcceptedType() {
+        ApiRequest request = ApiRequest.from(new APIGatewayProxyRequestEvent()
+                .withHeaders(Map.of("accept", "application/vnd.whatif.candles; q=1, application/json")));
+        assertTrue(request.prefers("application/vnd.whatif.candles"));
+        assertFalse(request.prefers("application/json"));
+        assertFalse(ApiRequest.from(new APIGatewayProxyRequestEvent()).prefers("application/json"));
+    }
+
+    private ApiRequest read(String event) throws IOException {
+        return ApiRequest.read(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), jsonFactory);
+    }
+}
@@ -0,0 +1,139 @@
+package org.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 1_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 10, 0.5, OPEN_MILLIS, now::get);
+
+    @Test
+    void opensOnceTheFailureRatioIsReached() {
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess();
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.openException().getRetryAfterSeconds());
+        assertEquals(503, breaker.openException().getStatusCode());
+    }
+
+    @Test
+    void waitsForHalfTheWindowBeforeOpening() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.isClosed());
+
+        breaker.onFailure();
+        assertFalse(breaker.isClosed());
+    }
+
+    @Test
+    void forgetsFailuresThatLeaveTheWindow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess();
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    void letsASingleTrialThroughOnceTheOpenPeriodEnds() {
+        open();
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS - 1));
+        assertFalse(breaker.tryAcquire());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+
+        assertTrue(breaker.isClosed());
+        assertTrue(breaker.tryAcquire());
+        // The trial's success starts a fresh window
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    void reopensWhenTheTrialFails() {
+        open();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS));
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpened());
+        assertFalse(breaker.tryAcquire());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS));
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void releasesTheTrialSlotWhenTheTrialIsShedLocally() {
+        open();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS));
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onComplete(new CompletionException(new CoinbaseRateLimitedException("{}", 1)));
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void countsOnlyDegradedUpstreamAnswersAsFailures() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onComplete(new CompletionException(new CoinbaseUpstreamException(404, "{}")));
+            breaker.onComplete(new CoinbaseRateLimitedException("{}", 1));
+        }
+        assertTrue(breaker.isClosed());
+
+        assertTrue(CircuitBreaker.isUpstreamFailure(new CoinbaseUpstreamException(502, "{}")));
+        assertTrue(CircuitBreaker.isUpstreamFailure(new CompletionException(new HttpTimeoutException("timed out"))));
+        assertTrue(CircuitBreaker.isUpstreamFailure(new IOException("reset")));
+        assertTrue(CircuitBreaker.isUpstreamFailure(breaker.openException()));
+        assertFalse(CircuitBreaker.isUpstreamFailure(new CoinbaseUpstreamException(400, "{}")));
+        assertFalse(CircuitBreaker.isUpstreamFailure(new IllegalStateException()));
+    }
+
+    private void open() {
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,132 @@
+package org.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestHedgerTest {
+
+    // Hedges go out 10 ms after the first attempt, for every call
+    private final RequestHedger hedger = new RequestHedger(10, 10, 1_000, 1.0);
+
+    @Test
+    void doesNotHedgeAnAttemptThatAnswersInTime() throws Exception {
+        AtomicInteger hedges = new AtomicInteger();
+
+        String result = hedger.execute(() -> CompletableFuture.completedFuture("first"), () -> {
+            hedges.incrementAndGet();
+            return CompletableFuture.completedFuture("hedge");
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals("first", result);
+        Thread.sleep(50);
+        assertEquals(0, hedges.get());
+        assertEquals(0, hedger.getHedges());
+    }
+
+    @Test
+    void firstSuccessWins() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        CompletableFuture<String> result = hedger.execute(() -> first, () -> CompletableFuture.completedFuture("hedge"));
+
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS));
+        first.complete("first");
+        assertEquals("hedge", result.join());
+        assertEquals(1, hedger.getHedges());
+        // Counted just after the winning answer completes the call
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (hedger.getHedgeWins() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, hedger.getHedgeWins());
+    }
+
+    @Test
+    void aFailedAttemptLeavesTheOtherToAnswer() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        CountDownLatch hedged = new CountDownLatch(1);
+
+        CompletableFuture<String> result = hedger.execute(() -> first, () -> {
+            hedged.countDown();
+            return hedge;
+        });
+        assertTrue(hedged.await(1, TimeUnit.SECONDS));
+
+        hedge.completeExceptionally(new IOException("reset"));
+        assertFalse(result.isDone());
+        first.complete("first");
+
+        assertEquals("first", result.get(1, TimeUnit.SECONDS));
+        assertEquals(0, hedger.getHedgeWins());
+    }
+
+    @Test
+    void failsOnlyOnceBothAttemptsHaveFailed() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        CountDownLatch hedged = new CountDownLatch(1);
+        IOException firstError = new IOException("first");
+
+        CompletableFuture<String> result = hedger.execute(() -> first, () -> {
+            hedged.countDown();
+            return hedge;
+        });
+        assertTrue(hedged.await(1, TimeUnit.SECONDS));
+
+        first.completeExceptionally(firstError);
+        assertFalse(result.isDone());
+        hedge.completeExceptionally(new IOException("hedge"));
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertSame(firstError, e.getCause());
+    }
+
+    @Test
+    void aDeclinedHedgeLeavesTheCallToTheFirstAttempt() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CountDownLatch declined = new CountDownLatch(1);
+
+        CompletableFuture<String> result = hedger.execute(() -> first, () -> {
+            declined.countDown();
+            return null;
+        });
+        assertTrue(declined.await(1, TimeUnit.SECONDS));
+        assertFalse(result.isDone());
+
+        IOException error = new IOException("first");
+        first.completeExceptionally(error);
+
+        assertSame(error, assertThrows(CompletionException.class, result::join).getCause());
+    }
+
+    @Test
+    void neverHedgesBeyondTheRatio() throws Exception {
+        RequestHedger disabled = new RequestHedger(10, 10, 1_000, 0);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger hedges = new AtomicInteger();
+
+        CompletableFuture<String> result = disabled.execute(() -> first, () -> {
+            hedges.incrementAndGet();
+            return CompletableFuture.completedFuture("hedge");
+        });
+        Thread.sleep(50);
+
+        assertFalse(result.isDone());
+        assertEquals(0, hedges.get());
+        first.complete("first");
+        assertEquals("first", result.join());
+    }
+}
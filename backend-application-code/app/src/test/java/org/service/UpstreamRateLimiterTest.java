@@ -0,0 +1,166 @@
+package org.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void refillsAtTheRateUpToTheBurst() {
+        UpstreamRateLimiter limiter = limiter(10, 2, 0);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        advanceMillis(50);
+        assertFalse(limiter.tryAcquire());
+        advanceMillis(50);
+        assertTrue(limiter.tryAcquire());
+
+        advanceMillis(10_000);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void pausesUntilRetryAfterHasPassed() {
+        UpstreamRateLimiter limiter = limiter(10, 5, 0);
+
+        limiter.onThrottled(3);
+
+        advanceMillis(2_999);
+        assertFalse(limiter.tryAcquire());
+        // The bucket starts empty again at the end of the pause and refills at the halved rate
+        advanceMillis(1);
+        assertFalse(limiter.tryAcquire());
+        advanceMillis(200);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void pausesOneSecondWithoutRetryAfter() {
+        UpstreamRateLimiter limiter = limiter(10, 5, 0);
+
+        limiter.onThrottled(-1);
+
+        advanceMillis(999);
+        assertFalse(limiter.tryAcquire());
+        advanceMillis(201);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void halvesTheRateOncePerBurstOf429s() {
+        UpstreamRateLimiter limiter = limiter(10, 5, 0);
+
+        limiter.onThrottled(1);
+        limiter.onThrottled(1);
+        limiter.onThrottled(2);
+
+        assertEquals(5, limiter.getRate(), 1e-9);
+        assertEquals(3, limiter.getThrottled());
+
+        advanceMillis(2_000);
+        limiter.onThrottled(1);
+        assertEquals(2.5, limiter.getRate(), 1e-9);
+    }
+
+    @Test
+    void neverSlowsBelowATenthOfTheRateAndRecoversOnSuccess() {
+        UpstreamRateLimiter limiter = limiter(10, 5, 0);
+        for (int i = 0; i < 10; i++) {
+            limiter.onThrottled(1);
+            advanceMillis(1_000);
+        }
+        assertEquals(1, limiter.getRate(), 1e-9);
+
+        limiter.onSuccess();
+        assertEquals(1.5, limiter.getRate(), 1e-9);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(10, limiter.getRate(), 1e-9);
+    }
+
+    @Test
+    void shedsCallsThatWouldWaitTooLongWithARoundedUpRetryAfter() {
+        UpstreamRateLimiter limiter = limiter(1, 1, 250);
+
+        assertTrue(limiter.acquire().isDone());
+        CoinbaseRateLimitedException shed = shedException(limiter.acquire());
+        assertEquals(429, shed.getStatusCode());
+        assertEquals(1, shed.getRetryAfterSeconds());
+        assertEquals(1, limiter.getShed());
+
+        // A 5 s pause at half the rate leaves 5 s + 2 s until the next token
+        limiter.onThrottled(5);
+        assertEquals(7, shedException(limiter.acquire()).getRetryAfterSeconds());
+        assertEquals(7, assertThrows(CoinbaseRateLimitedException.class, limiter::acquireBlocking).getRetryAfterSeconds());
+        assertEquals(3, limiter.getShed());
+    }
+
+    @Test
+    void queuesCallsWithinTheWaitLimit() {
+        UpstreamRateLimiter limiter = limiter(10, 1, 250);
+
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isCompletedExceptionally());
+        queued.join();
+        assertEquals(0, limiter.getShed());
+    }
+
+    @Test
+    void parsesRetryAfterDelaySeconds() {
+        assertEquals(120, UpstreamRateLimiter.parseRetryAfter("120"));
+        assertEquals(5, UpstreamRateLimiter.parseRetryAfter(" 5 "));
+        assertEquals(0, UpstreamRateLimiter.parseRetryAfter("-3"));
+    }
+
+    @Test
+    void parsesRetryAfterHttpDates() {
+        String inNinetySeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(90));
+        long seconds = UpstreamRateLimiter.parseRetryAfter(inNinetySeconds);
+        assertTrue(seconds >= 85 && seconds <= 90, "seconds=" + seconds);
+
+        assertEquals(0, UpstreamRateLimiter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    void rejectsMissingOrInvalidRetryAfter() {
+        assertEquals(-1, UpstreamRateLimiter.parseRetryAfter(null));
+        assertEquals(-1, UpstreamRateLimiter.parseRetryAfter(" "));
+        assertEquals(-1, UpstreamRateLimiter.parseRetryAfter("soon"));
+    }
+
+    private UpstreamRateLimiter limiter(double rate, int burst, long maxWaitMillis) {
+        return new UpstreamRateLimiter("test", rate, burst, maxWaitMillis, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static CoinbaseRateLimitedException shedException(CompletableFuture<Void> acquired) {
+        assertTrue(acquired.isCompletedExceptionally());
+        CompletionException e = assertThrows(CompletionException.class, acquired::join);
+        return assertInstanceOf(CoinbaseRateLimitedException.class, e.getCause());
+    }
+}
@@ -5,6 +5,8 @@ import * as lambda from 'aws-cdk-lib/aws-lambda';
 import * as path from 'path';
 import * as secretsmanager from 'aws-cdk-lib/aws-secretsmanager';
 import * as ec2 from 'aws-cdk-lib/aws-ec2'; // Import EC2 module
+import * as events from 'aws-cdk-lib/aws-events';
+import * as targets from 'aws-cdk-lib/aws-events-targets';
 
 export class WhatIfInvestedBackendStack extends cdk.Stack {
   constructor(scope: Construct, id: string, props?: cdk.StackProps) {
@@ -58,6 +60,11 @@ export class WhatIfInvestedBackendStack extends cdk.Stack {
     const api = new RestApi(this, 'WhatIfIInvestedApi', {
       restApiName: 'WhatIfIInvested API',
       description: 'API for WhatIfIInvested service.',
+      // Binary candles from the Lambda (base64) reach clients as bytes when this is the first type in their Accept
+      // header. JSON stays text, so request bodies on every route reach the Lambda as sent.
+      binaryMediaTypes: ['application/vnd.whatif.candles'],
+      // API Gateway gzips responses for clients that accept it; below 1 KiB the gzip overhead outweighs the savings
+      minCompressionSize: cdk.Size.kibibytes(1),
       defaultCorsPreflightOptions: {
         // allowOrigins: ['https://willitwork.net'],
         allowOrigins: ['http://localhost:3000'],
@@ -72,40 +79,34 @@ export class WhatIfInvestedBackendStack extends cdk.Stack {
       },
     });
 
-    // Existing Lambda for Coinbase Commerce
-    const coinbaseCreateChargeLambda = new lambda.Function(this, 'WhatIfIInvestedCoinbaseMerchantPaymentHandler', {
-      functionName: 'CoinbaseMerchantPaymentHandler',
+    // One function serves every route so /charges and /coinbase-proxy traffic keep the same containers warm
+    // and share one HttpClient, ObjectMapper and set of credentials (org.handlers.Router dispatches by resource).
+    // The streaming variant reads only the event fields it needs and writes the response envelope itself.
+    const routerLambda = new lambda.Function(this, 'WhatIfInvestedRouterLambda', {
+      functionName: 'WhatIfInvestedRouter',
       runtime: lambda.Runtime.JAVA_17,
       code: lambda.Code.fromAsset(path.join(__dirname, '../backend-application-code/app/build/distributions/what-if-invested-backend.zip')),
-      handler: 'org.handlers.CoinbaseMerchantPayments::handleRequest',
+      handler: 'org.handlers.StreamingRouter::handleRequest',
       memorySize: 512,
       timeout: cdk.Duration.seconds(30),
+      // Init (including startup priming) runs once per published version; invokes restore from the snapshot
+      snapStart: lambda.SnapStartConf.ON_PUBLISHED_VERSIONS,
       environment: {
         COINBASE_COMMERCE_API_KEY_ENV: "Some API Key",
+        COINBASE_API_SECRET_ARN: coinbaseApiSecret.secretArn,
+        COINBASE_API_SECRET_REFRESH_SECONDS: '900',
+        // Per-invocation stage timings as CloudWatch embedded metrics (off, histogram or emf)
+        STAGE_METRICS: 'emf',
+        // Warm Jackson, load credentials, resolve and connect to the upstreams during on-demand init ($LATEST).
+        // Snapshot inits skip this and prime in the before-checkpoint hook, so no connection lands in the snapshot.
+        STARTUP_PRIMING: 'eager',
         // Used by backend to set Coinbase redirect/cancel URLs
         FRONTEND_BASE_URL: 'http://localhost:3000',
-      },
-    });
-
-    const chargesResource = api.root.addResource('charges');
-    chargesResource.addMethod('POST', new LambdaIntegration(coinbaseCreateChargeLambda), {
-      methodResponses: [
-        { statusCode: '200', responseParameters: apiCORSResponseParameters },
-        { statusCode: '400', responseParameters: apiCORSResponseParameters },
-        { statusCode: '500', responseParameters: apiCORSResponseParameters },
-      ],
-    });
-
-    // New Lambda for Coinbase Exchange Proxy
-    const coinbaseExchangeProxyLambda = new lambda.Function(this, 'CoinbaseExchangeProxyLambda', {
-      functionName: 'CoinbaseExchangeProxy',
-      runtime: lambda.Runtime.JAVA_17,
-      code: lambda.Code.fromAsset(path.join(__dirname, '../backend-application-code/app/build/distributions/what-if-invested-backend.zip')),
-      handler: 'org.handlers.CoinbaseExchangeProxy::handleRequest', 
-      memorySize: 512,
-      timeout: cdk.Duration.seconds(10),
-      environment: {
-        COINBASE_API_SECRET_ARN: coinbaseApiSecret.secretArn,
+        // Closed candles are archived on the container's ephemeral storage and survive warm invocations
+        CANDLE_ARCHIVE_DIR: '/tmp/candle-archive',
+        // Per-pair daily close tables used to answer daily what-if queries without fetching candles
+        DAILY_CLOSE_INDEX_DIR: '/tmp/daily-closes',
+        DAILY_CLOSE_PAIRS: 'BTC-USD,ETH-USD',
       },
       // VPC configuration for static egress IP
       vpc: vpc,
@@ -115,14 +116,39 @@ export class WhatIfInvestedBackendStack extends cdk.Stack {
     });
 
     // Grant Lambda permissions to read the secret
-    coinbaseApiSecret.grantRead(coinbaseExchangeProxyLambda);
+    coinbaseApiSecret.grantRead(routerLambda);
 
     // Grant Lambda permissions to create network interfaces in the VPC
-    coinbaseExchangeProxyLambda.connections.allowToAnyIpv4(ec2.Port.tcp(443), 'Allow outbound HTTPS to Coinbase');
+    routerLambda.connections.allowToAnyIpv4(ec2.Port.tcp(443), 'Allow outbound HTTPS to Coinbase');
+
+    // SnapStart only applies to published versions, so traffic goes through an alias
+    const routerAlias = new lambda.Alias(this, 'WhatIfInvestedRouterLive', {
+      aliasName: 'live',
+      version: routerLambda.currentVersion,
+    });
+    const routerIntegration = new LambdaIntegration(routerAlias);
+
+    const chargesResource = api.root.addResource('charges');
+    chargesResource.addMethod('POST', routerIntegration, {
+      methodResponses: [
+        { statusCode: '200', responseParameters: apiCORSResponseParameters },
+        { statusCode: '400', responseParameters: apiCORSResponseParameters },
+        { statusCode: '500', responseParameters: apiCORSResponseParameters },
+      ],
+    });
 
+    // Append the day that just closed to the daily close indexes once its candle has settled (an hour after
+    // midnight UTC); each run also re-fetches the previous day in case it was revised
+    new events.Rule(this, 'RefreshDailyClosesRule', {
+      schedule: events.Schedule.cron({ minute: '15', hour: '1' }),
+      targets: [new targets.LambdaFunction(routerAlias, {
+        // Not an API Gateway event (no requestContext), which is what lets the router run the task
+        event: events.RuleTargetInput.fromObject({ resource: '/tasks/refresh-daily-closes' }),
+      })],
+    });
 
     const coinbaseProxyResource = api.root.addResource('coinbase-proxy');
-    coinbaseProxyResource.addMethod('POST', new LambdaIntegration(coinbaseExchangeProxyLambda), {
+    coinbaseProxyResource.addMethod('POST', routerIntegration, {
       methodResponses: [
         { statusCode: '200', responseParameters: apiCORSResponseParameters },
         { statusCode: '400', responseParameters: apiCORSResponseParameters },